@@ -0,0 +1,109 @@
+package com.microprofile.benchmark;
+
+import com.microprofile.config.ConnectionPool;
+import com.microprofile.config.EnrutadorConexiones;
+import com.microprofile.data.EsquemaProductos;
+import com.microprofile.data.Producto;
+import com.microprofile.data.ProductoDAO;
+import com.microprofile.util.MetricasConsultas;
+import com.microprofile.util.QueryLogger;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Base de datos H2 en memoria y DAO armado a mano, sin contenedor CDI
+public final class BaseDatosH2 {
+
+    private static final int LOTE_CARGA = 10000;
+
+    private BaseDatosH2() {
+    }
+
+    public static ConnectionPool crearPool(String nombre) {
+        String url = "jdbc:h2:mem:" + nombre + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1";
+        return new ConnectionPool(nombre, () -> DriverManager.getConnection(url, "sa", ""), 1, 8, 5000, 300000, 2);
+    }
+
+    public static void crearTabla(ConnectionPool pool) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS productos");
+            stmt.execute("CREATE TABLE productos ("
+                    + "id INT IDENTITY PRIMARY KEY, "
+                    + "nombre VARCHAR(100) NOT NULL, "
+                    + "descripcion VARCHAR(500), "
+                    + "precio DECIMAL(10, 2) NOT NULL, "
+                    + "cantidad INT NOT NULL, "
+                    + "fecha_creacion DATETIME2 DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    public static void crearIndices(ConnectionPool pool) throws SQLException {
+        EsquemaProductos esquema = new EsquemaProductos();
+        inyectar(esquema, "connectionPool", pool);
+        esquema.crearIndices();
+    }
+
+    public static ProductoDAO crearDAO(ConnectionPool pool) {
+        ProductoDAO dao = new ProductoDAO();
+        inyectar(dao, "enrutadorConexiones", new EnrutadorConexiones(pool, Collections.emptyList(), 0, 1, 0));
+        // Sin @PostConstruct el registro de consultas queda deshabilitado
+        inyectar(dao, "queryLogger", new QueryLogger());
+        inyectar(dao, "metricasConsultas", new MetricasConsultas());
+        inyectar(dao, "fetchSize", 500);
+        inyectar(dao, "tamanoLote", 1000);
+        return dao;
+    }
+
+    // Con JDBC batch y no con ProductoDAO.crearLote, que usa MERGE ... OUTPUT de SQL Server y H2 no lo admite
+    public static void poblar(ConnectionPool pool, int filas) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(
+                     "INSERT INTO productos (nombre, descripcion, precio, cantidad) VALUES (?, ?, ?, ?)")) {
+            connection.setAutoCommit(false);
+            for (int inicio = 0; inicio < filas; inicio += LOTE_CARGA) {
+                for (Producto producto : productos(Math.min(LOTE_CARGA, filas - inicio))) {
+                    stmt.setString(1, producto.getNombre());
+                    stmt.setString(2, producto.getDescripcion());
+                    stmt.setBigDecimal(3, producto.getPrecio());
+                    stmt.setInt(4, producto.getCantidad());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    public static List<Producto> productos(int cantidad) {
+        List<Producto> productos = new ArrayList<>(cantidad);
+        LocalDateTime fecha = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 1; i <= cantidad; i++) {
+            Producto producto = new Producto("Producto " + i, "Descripción del producto de prueba número " + i,
+                    BigDecimal.valueOf(i % 10000, 2).add(BigDecimal.ONE), i % 500);
+            producto.setId(i);
+            producto.setFechaCreacion(fecha.plusSeconds(i));
+            productos.add(producto);
+        }
+        return productos;
+    }
+
+    public static void inyectar(Object bean, String campo, Object valor) {
+        try {
+            Field field = bean.getClass().getDeclaredField(campo);
+            field.setAccessible(true);
+            field.set(bean, valor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo inyectar " + campo, e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.microprofile.benchmark;
+
+import com.microprofile.config.ConnectionPool;
+import com.microprofile.data.FiltroProductos;
+import com.microprofile.data.Producto;
+import com.microprofile.data.ProductoDAO;
+import com.microprofile.data.Proyeccion;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Consultas de ProductoDAO contra H2 en memoria con distintos tamaños de tabla
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ProductoDAOBenchmark {
+
+    // Columnas de una vista de listado, sin descripción ni fecha
+    private static final Proyeccion LISTADO = Proyeccion.de("id,nombre,precio,cantidad");
+
+    @Param({"1000", "100000", "1000000"})
+    public int filas;
+
+    private ConnectionPool pool;
+    private ProductoDAO dao;
+
+    @Setup
+    public void preparar() throws SQLException {
+        pool = BaseDatosH2.crearPool("dao" + filas);
+        BaseDatosH2.crearTabla(pool);
+        BaseDatosH2.crearIndices(pool);
+        dao = BaseDatosH2.crearDAO(pool);
+        BaseDatosH2.poblar(pool, filas);
+    }
+
+    @TearDown
+    public void cerrar() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> obtenerPorId() throws SQLException {
+        return dao.obtenerPorId(ThreadLocalRandom.current().nextInt(filas) + 1);
+    }
+
+    // Mapeo de 100 filas a Producto desde una posición aleatoria
+    @Benchmark
+    public List<Producto> obtenerPagina() throws SQLException {
+        return dao.obtenerPagina(ThreadLocalRandom.current().nextInt(Math.max(1, filas - 100)), 100);
+    }
+
+    // Rango de precio estrecho ordenado por precio, resuelto con el índice de precio
+    @Benchmark
+    public List<Producto> buscarPorPrecio() throws SQLException {
+        FiltroProductos filtro = new FiltroProductos();
+        BigDecimal desde = BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(9900), 2);
+        filtro.setPrecioMinimo(desde);
+        filtro.setPrecioMaximo(desde.add(BigDecimal.ONE));
+        filtro.setOrden(FiltroProductos.Orden.PRECIO);
+        return dao.buscar(filtro, null, 100);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Producto> obtenerTodos() throws SQLException {
+        return dao.obtenerTodos();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int recorrerTodos(Blackhole blackhole) throws SQLException, IOException {
+        return dao.recorrerTodos(blackhole::consume);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int recorrerListado(Blackhole blackhole) throws SQLException, IOException {
+        return dao.recorrerTodos(blackhole::consume, LISTADO);
+    }
+}
@@ -0,0 +1,69 @@
+package com.microprofile.rest;
+
+import com.microprofile.benchmark.BaseDatosH2;
+import com.microprofile.data.Producto;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.stream.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Serialización de listas de Producto: JSON-B por reflexión frente al generador JSON-P de ProductoJson
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoJsonBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int tamano;
+
+    private List<Producto> productos;
+    private Jsonb jsonb;
+
+    @Setup
+    public void preparar() {
+        productos = BaseDatosH2.productos(tamano);
+        jsonb = JsonbBuilder.create();
+    }
+
+    @TearDown
+    public void cerrar() throws Exception {
+        jsonb.close();
+    }
+
+    @Benchmark
+    public byte[] jsonb() {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(tamano * 160);
+        jsonb.toJson(productos, salida);
+        return salida.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] jsonp() {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(tamano * 160);
+        try (JsonGenerator generador = ProductoJson.crearGenerador(salida)) {
+            generador.writeStartArray();
+            for (Producto producto : productos) {
+                ProductoJson.escribir(generador, producto);
+            }
+            generador.writeEnd();
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,369 @@
+package com.microprofile.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Pool acotado de conexiones JDBC: cada operación toma una conexión y la devuelve al cerrarla
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final long UMBRAL_VALIDACION_MS = 500;
+
+    @FunctionalInterface
+    public interface FabricaConexiones {
+        Connection abrir() throws SQLException;
+    }
+
+    private final String nombre;
+    private final FabricaConexiones fabrica;
+    private final int minimo;
+    private final int maximo;
+    private final long tiempoEsperaMs;
+    private final long tiempoInactividadMs;
+    private final int timeoutValidacionSegundos;
+    private final int timeoutConsultaSegundos;
+    private final long umbralValidacionNanos;
+
+    private final Semaphore permisos;
+    private final LinkedBlockingDeque<ConexionInactiva> inactivas = new LinkedBlockingDeque<>();
+    private final AtomicInteger activas = new AtomicInteger();
+    private final AtomicInteger enEspera = new AtomicInteger();
+    private final AtomicInteger fisicas = new AtomicInteger();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado;
+
+    public ConnectionPool(String nombre, FabricaConexiones fabrica, int minimo, int maximo,
+                          long tiempoEsperaMs, long tiempoInactividadMs, int timeoutValidacionSegundos) {
+        this(nombre, fabrica, minimo, maximo, tiempoEsperaMs, tiempoInactividadMs, timeoutValidacionSegundos, 0);
+    }
+
+    // timeoutConsultaSegundos se aplica a cada sentencia creada con las conexiones del pool (0 = sin límite)
+    public ConnectionPool(String nombre, FabricaConexiones fabrica, int minimo, int maximo,
+                          long tiempoEsperaMs, long tiempoInactividadMs, int timeoutValidacionSegundos,
+                          int timeoutConsultaSegundos) {
+        this(nombre, fabrica, minimo, maximo, tiempoEsperaMs, tiempoInactividadMs, timeoutValidacionSegundos,
+                timeoutConsultaSegundos, UMBRAL_VALIDACION_MS);
+    }
+
+    // Las conexiones devueltas hace menos de umbralValidacionMs se entregan sin validar
+    public ConnectionPool(String nombre, FabricaConexiones fabrica, int minimo, int maximo,
+                          long tiempoEsperaMs, long tiempoInactividadMs, int timeoutValidacionSegundos,
+                          int timeoutConsultaSegundos, long umbralValidacionMs) {
+        if (maximo < 1 || minimo < 0 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamaño de pool inválido: minimo=" + minimo + ", maximo=" + maximo);
+        }
+        this.nombre = nombre;
+        this.fabrica = fabrica;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.tiempoEsperaMs = tiempoEsperaMs;
+        this.tiempoInactividadMs = tiempoInactividadMs;
+        this.timeoutValidacionSegundos = timeoutValidacionSegundos;
+        this.timeoutConsultaSegundos = timeoutConsultaSegundos;
+        this.umbralValidacionNanos = TimeUnit.MILLISECONDS.toNanos(umbralValidacionMs);
+        this.permisos = new Semaphore(maximo, true);
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread hilo = new Thread(runnable, "pool-" + nombre + "-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        // El llenado inicial, el desalojo y la validación de las inactivas corren en segundo plano
+        long periodo = Math.max(1000L, Math.min(tiempoInactividadMs / 2, 30000L));
+        mantenimiento.scheduleWithFixedDelay(this::mantener, 0, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    // Tomar una conexión del pool; se devuelve al llamar a close()
+    public Connection getConnection() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones '" + nombre + "' está cerrado");
+        }
+
+        boolean adquirido;
+        enEspera.incrementAndGet();
+        try {
+            adquirido = permisos.tryAcquire(tiempoEsperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba una conexión del pool", e);
+        } finally {
+            enEspera.decrementAndGet();
+        }
+
+        if (!adquirido) {
+            throw new SQLTransientConnectionException("No hay conexiones disponibles en el pool '" + nombre
+                    + "' tras esperar " + tiempoEsperaMs + " ms");
+        }
+
+        try {
+            Connection fisica = tomarConexionValida();
+            activas.incrementAndGet();
+            return envolver(fisica);
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getConexionesActivas() {
+        return activas.get();
+    }
+
+    public int getConexionesInactivas() {
+        return inactivas.size();
+    }
+
+    public int getHilosEnEspera() {
+        return enEspera.get();
+    }
+
+    public int getConexionesTotales() {
+        return fisicas.get();
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionInactiva inactiva;
+        while ((inactiva = inactivas.pollFirst()) != null) {
+            cerrarFisica(inactiva.conexion);
+        }
+        LOGGER.info("Pool de conexiones '" + nombre + "' cerrado");
+    }
+
+    // Validación al tomar solo si la conexión lleva inactiva más que el umbral: validar siempre costaría
+    // un viaje al servidor por operación. Las caídas en uso se descartan por su SQLState (clase 08).
+    private Connection tomarConexionValida() throws SQLException {
+        while (true) {
+            ConexionInactiva inactiva = inactivas.pollFirst();
+            if (inactiva == null) {
+                Connection nueva = abrirFisica(maximo);
+                if (nueva != null) {
+                    return nueva;
+                }
+                // Se alcanzó el máximo: alguna conexión está por volver al pool
+                try {
+                    inactiva = inactivas.pollFirst(10, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido mientras se esperaba una conexión del pool", e);
+                }
+                if (inactiva == null) {
+                    continue;
+                }
+            }
+            if (System.nanoTime() - inactiva.desde < umbralValidacionNanos || esValida(inactiva.conexion)) {
+                return inactiva.conexion;
+            }
+            LOGGER.warning("Descartando conexión inválida del pool '" + nombre + "'");
+            cerrarFisica(inactiva.conexion);
+        }
+    }
+
+    private boolean esValida(Connection conexion) {
+        try {
+            return !conexion.isClosed() && conexion.isValid(timeoutValidacionSegundos);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Reserva un hueco antes de abrir para que el total nunca supere el límite indicado
+    private Connection abrirFisica(int limite) throws SQLException {
+        int actual;
+        do {
+            actual = fisicas.get();
+            if (actual >= limite) {
+                return null;
+            }
+        } while (!fisicas.compareAndSet(actual, actual + 1));
+
+        try {
+            return fabrica.abrir();
+        } catch (SQLException | RuntimeException e) {
+            fisicas.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void cerrarFisica(Connection conexion) {
+        fisicas.decrementAndGet();
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error al cerrar conexión física", e);
+        }
+    }
+
+    private void devolver(Connection fisica, boolean descartar) {
+        activas.decrementAndGet();
+        try {
+            if (cerrado || descartar) {
+                cerrarFisica(fisica);
+                return;
+            }
+            // Dejar la conexión en estado limpio para el siguiente uso
+            if (!fisica.getAutoCommit()) {
+                fisica.rollback();
+                fisica.setAutoCommit(true);
+            }
+            inactivas.offerFirst(new ConexionInactiva(fisica, System.nanoTime()));
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error al devolver conexión al pool '" + nombre + "': " + e.getMessage(), e);
+            cerrarFisica(fisica);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    private void mantener() {
+        try {
+            desalojarInactivas();
+            validarInactivas();
+            completarMinimo();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error en el mantenimiento del pool '" + nombre + "'", e);
+        }
+    }
+
+    private void desalojarInactivas() {
+        long limite = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(tiempoInactividadMs);
+        for (ConexionInactiva inactiva : inactivas) {
+            if (fisicas.get() <= minimo) {
+                return;
+            }
+            if (inactiva.desde - limite < 0 && inactivas.removeFirstOccurrence(inactiva)) {
+                cerrarFisica(inactiva.conexion);
+            }
+        }
+    }
+
+    // Se sacan de la cola mientras se validan para que nadie las tome a la vez
+    private void validarInactivas() {
+        long limite = System.nanoTime() - umbralValidacionNanos;
+        for (ConexionInactiva inactiva : inactivas) {
+            if (inactiva.desde - limite >= 0 || !inactivas.removeFirstOccurrence(inactiva)) {
+                continue;
+            }
+            if (esValida(inactiva.conexion)) {
+                inactivas.offerLast(inactiva);
+            } else {
+                LOGGER.warning("Descartando conexión inválida del pool '" + nombre + "'");
+                cerrarFisica(inactiva.conexion);
+            }
+        }
+    }
+
+    private void completarMinimo() {
+        while (!cerrado) {
+            try {
+                Connection nueva = abrirFisica(minimo);
+                if (nueva == null) {
+                    return;
+                }
+                inactivas.offerLast(new ConexionInactiva(nueva, System.nanoTime()));
+            } catch (SQLException e) {
+                LOGGER.warning("No se pudo abrir una conexión para el pool '" + nombre + "': " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private Connection envolver(Connection fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConexionPrestada(fisica));
+    }
+
+    private static final class ConexionInactiva {
+        private final Connection conexion;
+        private final long desde;
+
+        private ConexionInactiva(Connection conexion, long desde) {
+            this.conexion = conexion;
+            this.desde = desde;
+        }
+    }
+
+    // Intercepta close() para devolver la conexión en lugar de cerrarla
+    private final class ConexionPrestada implements InvocationHandler {
+        private final Connection fisica;
+        private boolean devuelta;
+        private boolean rota;
+
+        private ConexionPrestada(Connection fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica, rota);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPrestada[" + nombre + "]";
+                default:
+                    break;
+            }
+
+            if (devuelta) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+
+            try {
+                Object resultado = method.invoke(fisica, args);
+                if (resultado instanceof Statement && timeoutConsultaSegundos > 0) {
+                    ((Statement) resultado).setQueryTimeout(timeoutConsultaSegundos);
+                }
+                return resultado;
+            } catch (InvocationTargetException e) {
+                Throwable causa = e.getCause();
+                if (causa instanceof SQLException && esErrorDeConexion((SQLException) causa)) {
+                    rota = true;
+                }
+                throw causa;
+            }
+        }
+
+        // SQLState clase 08: errores de conexión, la conexión física no se reutiliza
+        private boolean esErrorDeConexion(SQLException e) {
+            String estado = e.getSQLState();
+            return estado != null && estado.startsWith("08");
+        }
+    }
+}
@@ -3,42 +3,172 @@ package com.microprofile.config;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
 
 @ApplicationScoped
 public class DatabaseConfig {
 
     private static final Logger LOGGER = Logger.getLogger(DatabaseConfig.class.getName());
 
-    @ConfigProperty(name = "database.url", defaultValue = "jdbc:sqlserver://microprofile.database.windows.net:1433;database=microprofile_demo;encrypt=true;trustServerCertificate=false;hostNameInCertificate=*.database.windows.net;loginTimeout=30")
+    @Inject
+    @ConfigProperty(name = "database.url", defaultValue = "jdbc:sqlserver://microprofile.database.windows.net:1433;database=microprofile_demo;encrypt=true;trustServerCertificate=false;hostNameInCertificate=*.database.windows.net;loginTimeout=5")
     private String url;
 
+    @Inject
     @ConfigProperty(name = "database.username", defaultValue = "adminsql")
     private String username;
 
+    @Inject
     @ConfigProperty(name = "database.password", defaultValue = "ferr@riGT1")
     private String password;
 
-    @Produces
-    public Connection createConnection() {
-        Connection conn = null;
+    @Inject
+    @ConfigProperty(name = "database.driver", defaultValue = "com.microsoft.sqlserver.jdbc.SQLServerDriver")
+    private String driver;
+
+    @Inject
+    @ConfigProperty(name = "database.pool.minimo", defaultValue = "2")
+    private int poolMinimo;
+
+    @Inject
+    @ConfigProperty(name = "database.pool.maximo", defaultValue = "20")
+    private int poolMaximo;
+
+    @Inject
+    @ConfigProperty(name = "database.pool.tiempoEsperaMs", defaultValue = "5000")
+    private long poolTiempoEsperaMs;
+
+    @Inject
+    @ConfigProperty(name = "database.pool.tiempoInactividadMs", defaultValue = "300000")
+    private long poolTiempoInactividadMs;
+
+    @Inject
+    @ConfigProperty(name = "database.pool.timeoutValidacionSegundos", defaultValue = "2")
+    private int poolTimeoutValidacionSegundos;
+
+    // Las conexiones devueltas hace menos de esto se prestan sin validar
+    @Inject
+    @ConfigProperty(name = "database.pool.umbralValidacionMs", defaultValue = "500")
+    private long poolUmbralValidacionMs;
+
+    // Límite por sentencia para que una base de datos lenta no retenga los hilos indefinidamente
+    @Inject
+    @ConfigProperty(name = "database.timeoutConsultaSegundos", defaultValue = "5")
+    private int timeoutConsultaSegundos;
+
+    // Réplicas de solo lectura, con el mismo usuario y tamaño de pool que la principal
+    @Inject
+    @ConfigProperty(name = "database.replicas.urls")
+    private Optional<List<String>> urlsReplicas;
+
+    // Tras una escritura las lecturas siguen en la principal este tiempo; debe superar el retraso de replicación
+    @Inject
+    @ConfigProperty(name = "database.replicas.ventanaLecturaPropiaMs", defaultValue = "2000")
+    private long ventanaLecturaPropiaMs;
+
+    @Inject
+    @ConfigProperty(name = "database.replicas.fallosParaExpulsar", defaultValue = "3")
+    private int fallosParaExpulsar;
+
+    @Inject
+    @ConfigProperty(name = "database.replicas.expulsionMs", defaultValue = "30000")
+    private long expulsionMs;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private ConnectionPool pool;
+    private EnrutadorConexiones enrutador;
+
+    @PostConstruct
+    void inicializar() {
         try {
-            LOGGER.info("Intentando conectar a la base de datos con URL: " + url);
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            conn = DriverManager.getConnection("jdbc:sqlserver://microprofile.database.windows.net:1433;database=microprofile_demo;encrypt=true;trustServerCertificate=false;hostNameInCertificate=*.database.windows.net;loginTimeout=30", "adminsql", "ferr@riGT1");
-            LOGGER.info("Conexión a la base de datos establecida exitosamente");
-            return conn;
+            Class.forName(driver);
         } catch (ClassNotFoundException e) {
             LOGGER.log(Level.SEVERE, "Error al cargar el driver JDBC: " + e.getMessage(), e);
             throw new RuntimeException("Error al cargar el driver JDBC", e);
+        }
+
+        pool = new ConnectionPool("principal", this::createConnection, poolMinimo, poolMaximo,
+                poolTiempoEsperaMs, poolTiempoInactividadMs, poolTimeoutValidacionSegundos, timeoutConsultaSegundos,
+                poolUmbralValidacionMs);
+        LOGGER.info("Pool de conexiones creado (minimo=" + poolMinimo + ", maximo=" + poolMaximo + ")");
+
+        List<ConnectionPool> replicas = new ArrayList<>();
+        for (String urlReplica : urlsReplicas.orElse(Collections.emptyList())) {
+            replicas.add(new ConnectionPool("replica-" + (replicas.size() + 1), () -> conectar(urlReplica), poolMinimo, poolMaximo,
+                    poolTiempoEsperaMs, poolTiempoInactividadMs, poolTimeoutValidacionSegundos, timeoutConsultaSegundos,
+                    poolUmbralValidacionMs));
+        }
+        enrutador = new EnrutadorConexiones(pool, replicas, ventanaLecturaPropiaMs, fallosParaExpulsar, expulsionMs);
+        if (!replicas.isEmpty()) {
+            LOGGER.info("Lecturas repartidas entre " + replicas.size() + " réplicas");
+        }
+
+        registrarGauge("database.pool.conexionesActivas", "Conexiones prestadas actualmente", pool::getConexionesActivas);
+        registrarGauge("database.pool.conexionesInactivas", "Conexiones libres en el pool", pool::getConexionesInactivas);
+        registrarGauge("database.pool.hilosEnEspera", "Hilos esperando una conexión", pool::getHilosEnEspera);
+        registrarGauge("database.replicas.disponibles", "Réplicas en rotación para lecturas", enrutador::getReplicasDisponibles);
+    }
+
+    @Produces
+    public ConnectionPool connectionPool() {
+        return pool;
+    }
+
+    @Produces
+    public EnrutadorConexiones enrutadorConexiones() {
+        return enrutador;
+    }
+
+    // Abre una conexión física nueva; el pool la usa como fábrica
+    public Connection createConnection() throws SQLException {
+        return conectar(url);
+    }
+
+    private Connection conectar(String destino) throws SQLException {
+        LOGGER.info("Intentando conectar a la base de datos con URL: " + destino);
+        try {
+            Connection conn = DriverManager.getConnection(destino, username, password);
+            LOGGER.info("Conexión a la base de datos establecida exitosamente");
+            return conn;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al conectar a la base de datos: " + e.getMessage(), e);
-            throw new RuntimeException("Error al conectar a la base de datos", e);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (enrutador != null) {
+            enrutador.close();
+        }
+        if (pool != null) {
+            pool.close();
         }
     }
-}
 
+    private void registrarGauge(String nombre, String descripcion, Supplier<Integer> valor) {
+        Metadata metadata = Metadata.builder()
+                .withName(nombre)
+                .withDescription(descripcion)
+                .withType(MetricType.GAUGE)
+                .build();
+        metricRegistry.gauge(metadata, valor);
+    }
+}
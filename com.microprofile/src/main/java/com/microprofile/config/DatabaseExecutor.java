@@ -0,0 +1,196 @@
+package com.microprofile.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+// Ejecutor acotado para el trabajo JDBC de los recursos asíncronos. Las tareas corren en hilos del
+// servidor (MicroProfile Context Propagation) con el contexto de la aplicación, CDI y el classloader
+// de la petición que las lanza; maxAsync y maxQueued limitan la concurrencia y la cola.
+@ApplicationScoped
+public class DatabaseExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(DatabaseExecutor.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "productos.async.habilitado", defaultValue = "true")
+    private boolean habilitado;
+
+    @Inject
+    @ConfigProperty(name = "productos.async.concurrenciaMaxima", defaultValue = "32")
+    private int concurrenciaMaxima;
+
+    @Inject
+    @ConfigProperty(name = "productos.async.capacidadCola", defaultValue = "1000")
+    private int capacidadCola;
+
+    @Inject
+    @ConfigProperty(name = "productos.async.timeoutMs", defaultValue = "10000")
+    private long timeoutMs;
+
+    // Importaciones y exportaciones: ejecutor propio para que no ocupen el de las peticiones
+    @Inject
+    @ConfigProperty(name = "productos.transferencias.concurrenciaMaxima", defaultValue = "4")
+    private int concurrenciaTransferencias;
+
+    // 0 no limita el tiempo
+    @Inject
+    @ConfigProperty(name = "productos.transferencias.timeoutMs", defaultValue = "0")
+    private long timeoutTransferenciasMs;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private ManagedExecutor ejecutor;
+    private ManagedExecutor transferencias;
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final AtomicInteger enEjecucion = new AtomicInteger();
+    private Counter rechazadas;
+
+    @PostConstruct
+    void inicializar() {
+        if (!habilitado) {
+            LOGGER.info("Modo asíncrono deshabilitado: las operaciones se ejecutan en el hilo de la petición");
+            return;
+        }
+
+        ejecutor = ManagedExecutor.builder()
+                .maxAsync(concurrenciaMaxima)
+                .maxQueued(capacidadCola)
+                .build();
+        // Sin apenas cola: una transferencia que no cabe se rechaza en lugar de esperar minutos su turno
+        int hilosTransferencias = Math.max(1, concurrenciaTransferencias);
+        transferencias = ManagedExecutor.builder()
+                .maxAsync(hilosTransferencias)
+                .maxQueued(hilosTransferencias)
+                .build();
+        LOGGER.info("Ejecutor asíncrono gestionado por el servidor (concurrencia máxima " + concurrenciaMaxima + ")");
+
+        rechazadas = metricRegistry.counter(metadata("productos.async.rechazadas", "Operaciones rechazadas por saturación del ejecutor", MetricType.COUNTER));
+        metricRegistry.gauge(metadata("productos.async.enCola", "Operaciones esperando turno en el ejecutor", MetricType.GAUGE), enCola::get);
+        metricRegistry.gauge(metadata("productos.async.enEjecucion", "Operaciones ejecutándose en el ejecutor", MetricType.GAUGE), enEjecucion::get);
+    }
+
+    // Ejecuta la tarea fuera del hilo de la petición; falla con RejectedExecutionException
+    // si el ejecutor está saturado y con TimeoutException si supera timeoutMs, e interrumpe la tarea
+    public <T> CompletableFuture<T> ejecutar(Callable<T> tarea) {
+        return ejecutar(ejecutor, tarea, timeoutMs);
+    }
+
+    // Para escrituras: sin límite propio, manda el @Timeout de ProductoService. Responder por tiempo
+    // agotado mientras la transacción sigue y acaba confirmando invitaría a reintentos duplicados.
+    public <T> CompletableFuture<T> ejecutarEscritura(Callable<T> tarea) {
+        return ejecutar(ejecutor, tarea, 0);
+    }
+
+    // Importaciones y exportaciones, que pueden durar minutos: en su propio pool y con su propio límite
+    public <T> CompletableFuture<T> ejecutarTransferencia(Callable<T> tarea) {
+        return ejecutar(transferencias, tarea, timeoutTransferenciasMs);
+    }
+
+    // timeoutMs 0 no limita el tiempo
+    private <T> CompletableFuture<T> ejecutar(ManagedExecutor ejecutor, Callable<T> tarea, long timeoutMs) {
+        if (!habilitado) {
+            try {
+                return CompletableFuture.completedFuture(tarea.call());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        Trabajador trabajador = new Trabajador();
+        enCola.incrementAndGet();
+        try {
+            ejecutor.execute(() -> {
+                enCola.decrementAndGet();
+                // Si expiró mientras esperaba en la cola ya nadie espera el resultado
+                if (resultado.isDone() || !trabajador.empezar()) {
+                    return;
+                }
+                enEjecucion.incrementAndGet();
+                try {
+                    resultado.complete(tarea.call());
+                } catch (Throwable e) {
+                    resultado.completeExceptionally(e);
+                } finally {
+                    enEjecucion.decrementAndGet();
+                    trabajador.terminar();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            enCola.decrementAndGet();
+            rechazadas.inc();
+            resultado.completeExceptionally(e);
+            return resultado;
+        }
+        if (timeoutMs <= 0) {
+            return resultado;
+        }
+        resultado.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((valor, error) -> {
+            if (error instanceof TimeoutException) {
+                trabajador.interrumpir();
+            }
+        });
+        return resultado;
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (ejecutor != null) {
+            ejecutor.shutdown();
+        }
+        if (transferencias != null) {
+            transferencias.shutdown();
+        }
+    }
+
+    // Hilo que ejecuta una tarea, para interrumpirla si expira. El interrupt no se escapa a la
+    // siguiente tarea del mismo hilo: terminar() lo limpia bajo el mismo monitor.
+    private static final class Trabajador {
+        private Thread hilo;
+        private boolean cancelado;
+
+        private synchronized boolean empezar() {
+            if (cancelado) {
+                return false;
+            }
+            hilo = Thread.currentThread();
+            return true;
+        }
+
+        private synchronized void terminar() {
+            hilo = null;
+            Thread.interrupted();
+        }
+
+        private synchronized void interrumpir() {
+            cancelado = true;
+            if (hilo != null) {
+                hilo.interrupt();
+            }
+        }
+    }
+
+    private static Metadata metadata(String nombre, String descripcion, MetricType tipo) {
+        return Metadata.builder()
+                .withName(nombre)
+                .withDescription(descripcion)
+                .withType(tipo)
+                .build();
+    }
+}
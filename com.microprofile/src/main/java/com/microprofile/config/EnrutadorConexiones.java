@@ -0,0 +1,220 @@
+package com.microprofile.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+// Separa lecturas y escrituras: las escrituras van siempre a la base principal y las lecturas se
+// reparten entre las réplicas. Tras cualquier escritura todas las lecturas vuelven a la principal
+// durante ventanaLecturaPropiaMs, que debe cubrir el retraso de replicación, para que quien acaba
+// de escribir lea lo escrito. El retraso no se mide: una réplica atrasada sigue en rotación mientras
+// responda. Una lectura que falla en una réplica se repite en la principal. Sin réplicas configuradas
+// todo va a la principal sin coste añadido.
+public class EnrutadorConexiones implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(EnrutadorConexiones.class.getName());
+
+    // Peso de cada muestra nueva en la media móvil de latencia
+    private static final double PESO_MUESTRA = 0.2;
+    // La latencia de una réplica sin muestras recientes se va olvidando con esta constante de tiempo,
+    // para que una medida mala (p. ej. abrir la conexión) no la deje fuera del reparto para siempre
+    private static final double OLVIDO_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final ConnectionPool principal;
+    private final Replica[] replicas;
+    private final long ventanaLecturaPropiaNanos;
+    private final int fallosParaExpulsar;
+    private final long expulsionNanos;
+    private volatile long ultimaEscritura;
+
+    // fallosParaExpulsar fallos seguidos al pedir conexión o al consultar sacan la réplica de rotación durante expulsionMs;
+    // pasado ese tiempo vuelve a probarse y un solo fallo más la expulsa de nuevo
+    public EnrutadorConexiones(ConnectionPool principal, List<ConnectionPool> replicas, long ventanaLecturaPropiaMs,
+                               int fallosParaExpulsar, long expulsionMs) {
+        this.principal = principal;
+        this.replicas = replicas.stream().map(Replica::new).toArray(Replica[]::new);
+        this.ventanaLecturaPropiaNanos = TimeUnit.MILLISECONDS.toNanos(ventanaLecturaPropiaMs);
+        this.fallosParaExpulsar = Math.max(1, fallosParaExpulsar);
+        this.expulsionNanos = TimeUnit.MILLISECONDS.toNanos(expulsionMs);
+        this.ultimaEscritura = System.nanoTime() - ventanaLecturaPropiaNanos - 1;
+    }
+
+    // Conexión de la principal; al cerrarla empieza la ventana de lectura propia
+    public Connection escritura() throws SQLException {
+        Connection conexion = principal.getConnection();
+        if (replicas.length == 0) {
+            return conexion;
+        }
+        return (Connection) Proxy.newProxyInstance(
+                EnrutadorConexiones.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        ultimaEscritura = System.nanoTime();
+                    }
+                    try {
+                        return method.invoke(conexion, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    // Conexión de la principal para leer lo último confirmado, sin abrir la ventana de lectura propia
+    public Connection principal() throws SQLException {
+        return principal.getConnection();
+    }
+
+    // Ejecuta la lectura en una réplica, o en la principal si hubo escrituras recientes o no hay réplicas
+    // disponibles. Si la réplica no entrega conexión o la consulta falla, el fallo cuenta para expulsarla y
+    // la lectura se repite en la principal mientras reintentable lo permita (p. ej. sin filas ya entregadas).
+    // alAbrir recibe el instante en que se pidió cada conexión, para medir la espera
+    public <T> T leer(Lectura<T> lectura, BooleanSupplier reintentable, LongConsumer alAbrir) throws SQLException {
+        Replica replica = replicas.length == 0 || System.nanoTime() - ultimaEscritura < ventanaLecturaPropiaNanos
+                ? null : elegir();
+        if (replica != null) {
+            try {
+                return replica.leer(lectura, alAbrir);
+            } catch (SQLException e) {
+                replica.fallo();
+                if (!reintentable.getAsBoolean()) {
+                    throw e;
+                }
+                LOGGER.warning("Lectura repetida en la principal, falló en la réplica '" + replica.pool.getNombre()
+                        + "': " + e.getMessage());
+            }
+        }
+
+        long inicio = System.nanoTime();
+        try (Connection conexion = principal.getConnection()) {
+            alAbrir.accept(inicio);
+            return lectura.ejecutar(conexion);
+        }
+    }
+
+    public int getReplicas() {
+        return replicas.length;
+    }
+
+    public int getReplicasDisponibles() {
+        long ahora = System.nanoTime();
+        int disponibles = 0;
+        for (Replica replica : replicas) {
+            if (replica.disponible(ahora)) {
+                disponibles++;
+            }
+        }
+        return disponibles;
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    // Dos réplicas disponibles al azar y de ellas la de menor latencia por conexiones en uso:
+    // reparte la carga sin que todas las lecturas se amontonen en la más rápida
+    private Replica elegir() {
+        long ahora = System.nanoTime();
+        Replica primera = null;
+        Replica segunda = null;
+        int vistas = 0;
+        int inicio = ThreadLocalRandom.current().nextInt(replicas.length);
+        for (int i = 0; i < replicas.length && segunda == null; i++) {
+            Replica replica = replicas[(inicio + i) % replicas.length];
+            if (!replica.disponible(ahora)) {
+                continue;
+            }
+            vistas++;
+            if (primera == null) {
+                primera = replica;
+            } else if (vistas == 2) {
+                segunda = replica;
+            }
+        }
+        if (segunda == null) {
+            return primera;
+        }
+        return primera.coste(ahora) <= segunda.coste(ahora) ? primera : segunda;
+    }
+
+    @FunctionalInterface
+    public interface Lectura<T> {
+        T ejecutar(Connection conexion) throws SQLException;
+    }
+
+    private final class Replica {
+        private final ConnectionPool pool;
+        // Fallos seguidos al pedir conexión o al consultar; una lectura completa los pone a cero
+        private final AtomicInteger fallosSeguidos = new AtomicInteger();
+        // Media móvil del tiempo de obtener una conexión validada: espera en el pool más ida y vuelta
+        private volatile double latenciaNanos;
+        private volatile long ultimaMuestra;
+        private volatile long expulsadaHasta;
+        private volatile boolean expulsada;
+
+        private Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        private boolean disponible(long ahora) {
+            return !expulsada || ahora - expulsadaHasta >= 0;
+        }
+
+        private double coste(long ahora) {
+            return (latencia(ahora) + 1) * (pool.getConexionesActivas() + 1);
+        }
+
+        private double latencia(long ahora) {
+            return latenciaNanos * Math.exp(-(ahora - ultimaMuestra) / OLVIDO_NANOS);
+        }
+
+        // Los errores de la consulta se propagan para que quien llama cuente el fallo
+        private <T> T leer(Lectura<T> lectura, LongConsumer alAbrir) throws SQLException {
+            long inicio = System.nanoTime();
+            try (Connection conexion = pool.getConnection()) {
+                alAbrir.accept(inicio);
+                muestra(System.nanoTime() - inicio);
+                T resultado = lectura.ejecutar(conexion);
+                exito();
+                return resultado;
+            }
+        }
+
+        private void muestra(long nanos) {
+            long ahora = System.nanoTime();
+            double anterior = latencia(ahora);
+            latenciaNanos = anterior == 0 ? nanos : anterior + PESO_MUESTRA * (nanos - anterior);
+            ultimaMuestra = ahora;
+        }
+
+        private void exito() {
+            fallosSeguidos.set(0);
+            if (expulsada) {
+                expulsada = false;
+                LOGGER.info("Réplica '" + pool.getNombre() + "' de nuevo en rotación");
+            }
+        }
+
+        private void fallo() {
+            if (fallosSeguidos.incrementAndGet() >= fallosParaExpulsar) {
+                expulsadaHasta = System.nanoTime() + expulsionNanos;
+                if (!expulsada) {
+                    expulsada = true;
+                    LOGGER.warning("Réplica '" + pool.getNombre() + "' fuera de rotación durante "
+                            + TimeUnit.NANOSECONDS.toMillis(expulsionNanos) + " ms");
+                }
+            }
+        }
+    }
+}
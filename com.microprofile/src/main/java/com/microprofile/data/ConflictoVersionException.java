@@ -0,0 +1,20 @@
+package com.microprofile.data;
+
+import java.sql.SQLException;
+
+// El producto existe pero su versión no coincide con la esperada (concurrencia optimista)
+public class ConflictoVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+
+    public ConflictoVersionException(int id, int versionEsperada) {
+        super("El producto con ID " + id + " fue modificado por otra operación (versión esperada " + versionEsperada + ")");
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
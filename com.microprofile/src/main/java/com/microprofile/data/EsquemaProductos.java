@@ -0,0 +1,89 @@
+package com.microprofile.data;
+
+import com.microprofile.config.ConnectionPool;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Crea al arrancar los índices que usan los filtros y ordenaciones de ProductoDAO.buscar.
+// Solo crea los que faltan; si no hay permisos se registra un aviso y la aplicación sigue.
+@ApplicationScoped
+public class EsquemaProductos {
+
+    private static final Logger LOGGER = Logger.getLogger(EsquemaProductos.class.getName());
+
+    // Columnas filtrables; en SQL Server cada índice incluye además la clave agrupada (id)
+    private static final String[] COLUMNAS_INDEXADAS = {"precio", "cantidad", "nombre", "fecha_creacion"};
+
+    @Inject
+    private ConnectionPool connectionPool;
+
+    @Inject
+    @ConfigProperty(name = "productos.esquema.crearIndices", defaultValue = "true")
+    private boolean crearIndices;
+
+    void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        if (!crearIndices) {
+            return;
+        }
+        // En segundo plano: con la base de datos lenta o caída no se retrasa el arranque
+        Thread creador = new Thread(() -> {
+            try {
+                crearIndices();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "No se pudieron crear los índices de productos: " + e.getMessage(), e);
+            }
+        }, "esquema-productos");
+        creador.setDaemon(true);
+        creador.start();
+    }
+
+    public int crearIndices() throws SQLException {
+        int creados = 0;
+        try (Connection connection = connectionPool.getConnection()) {
+            Set<String> indexadas = columnasIndexadas(connection.getMetaData());
+            try (Statement stmt = connection.createStatement()) {
+                for (String columna : COLUMNAS_INDEXADAS) {
+                    if (!indexadas.contains(columna)) {
+                        stmt.executeUpdate("CREATE INDEX ix_productos_" + columna + " ON productos (" + columna + ")");
+                        LOGGER.info("Índice creado en productos(" + columna + ")");
+                        creados++;
+                    }
+                }
+            }
+        }
+        return creados;
+    }
+
+    // Columnas que ya encabezan algún índice de la tabla
+    private Set<String> columnasIndexadas(DatabaseMetaData metaData) throws SQLException {
+        Set<String> columnas = new HashSet<>();
+        // Algunas bases guardan los nombres en mayúsculas
+        for (String tabla : new String[]{"productos", "PRODUCTOS"}) {
+            try (ResultSet rs = metaData.getIndexInfo(null, null, tabla, false, true)) {
+                while (rs.next()) {
+                    String columna = rs.getString("COLUMN_NAME");
+                    if (columna != null && rs.getShort("ORDINAL_POSITION") == 1) {
+                        columnas.add(columna.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            if (!columnas.isEmpty()) {
+                break;
+            }
+        }
+        return columnas;
+    }
+}
@@ -0,0 +1,13 @@
+package com.microprofile.data;
+
+import java.io.IOException;
+
+// Una fila de una importación no se puede convertir en producto; las demás siguen procesándose
+public class FilaInvalidaException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FilaInvalidaException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,136 @@
+package com.microprofile.data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Criterios de búsqueda de productos; los campos nulos no filtran
+public class FiltroProductos {
+
+    // Propiedades de Producto por las que se puede ordenar
+    public enum Orden {
+        ID("id", 0),
+        NOMBRE("nombre", Proyeccion.NOMBRE),
+        PRECIO("precio", Proyeccion.PRECIO),
+        CANTIDAD("cantidad", Proyeccion.CANTIDAD),
+        FECHA_CREACION("fecha_creacion", Proyeccion.FECHA_CREACION);
+
+        private final String columna;
+        private final int campo;
+
+        Orden(String columna, int campo) {
+            this.columna = columna;
+            this.campo = campo;
+        }
+
+        public String getColumna() {
+            return columna;
+        }
+
+        // Campo de Proyeccion con el valor de orden, que hace falta para el cursor
+        public int getCampo() {
+            return campo;
+        }
+    }
+
+    private BigDecimal precioMinimo;
+    private BigDecimal precioMaximo;
+    private Integer cantidadMinima;
+    private Integer cantidadMaxima;
+    private String prefijoNombre;
+    private String nombreContiene;
+    private LocalDateTime creadoDesde;
+    private LocalDateTime creadoHasta;
+    private Orden orden = Orden.ID;
+    private boolean descendente;
+    // Con un cursor y orden distinto de id: valor de la columna de orden en la última fila de la página
+    // anterior (null si esa fila no lo tenía). Se combina con el ID del cursor
+    private Object valorCursor;
+
+    public BigDecimal getPrecioMinimo() {
+        return precioMinimo;
+    }
+
+    public void setPrecioMinimo(BigDecimal precioMinimo) {
+        this.precioMinimo = precioMinimo;
+    }
+
+    public BigDecimal getPrecioMaximo() {
+        return precioMaximo;
+    }
+
+    public void setPrecioMaximo(BigDecimal precioMaximo) {
+        this.precioMaximo = precioMaximo;
+    }
+
+    public Integer getCantidadMinima() {
+        return cantidadMinima;
+    }
+
+    public void setCantidadMinima(Integer cantidadMinima) {
+        this.cantidadMinima = cantidadMinima;
+    }
+
+    public Integer getCantidadMaxima() {
+        return cantidadMaxima;
+    }
+
+    public void setCantidadMaxima(Integer cantidadMaxima) {
+        this.cantidadMaxima = cantidadMaxima;
+    }
+
+    public String getPrefijoNombre() {
+        return prefijoNombre;
+    }
+
+    public void setPrefijoNombre(String prefijoNombre) {
+        this.prefijoNombre = prefijoNombre;
+    }
+
+    public String getNombreContiene() {
+        return nombreContiene;
+    }
+
+    public void setNombreContiene(String nombreContiene) {
+        this.nombreContiene = nombreContiene;
+    }
+
+    public LocalDateTime getCreadoDesde() {
+        return creadoDesde;
+    }
+
+    public void setCreadoDesde(LocalDateTime creadoDesde) {
+        this.creadoDesde = creadoDesde;
+    }
+
+    public LocalDateTime getCreadoHasta() {
+        return creadoHasta;
+    }
+
+    public void setCreadoHasta(LocalDateTime creadoHasta) {
+        this.creadoHasta = creadoHasta;
+    }
+
+    public Orden getOrden() {
+        return orden;
+    }
+
+    public void setOrden(Orden orden) {
+        this.orden = orden;
+    }
+
+    public boolean isDescendente() {
+        return descendente;
+    }
+
+    public void setDescendente(boolean descendente) {
+        this.descendente = descendente;
+    }
+
+    public Object getValorCursor() {
+        return valorCursor;
+    }
+
+    public void setValorCursor(Object valorCursor) {
+        this.valorCursor = valorCursor;
+    }
+}
@@ -0,0 +1,14 @@
+package com.microprofile.data;
+
+import java.io.IOException;
+
+// Entrega de uno en uno los productos de una importación a medida que se leen del cuerpo
+public interface FuenteProductos {
+
+    // Null al terminar. Una fila mal formada lanza FilaInvalidaException y se puede seguir leyendo;
+    // cualquier otra IOException deja la entrada inservible.
+    Producto siguiente() throws IOException;
+
+    // Línea del último producto leído, para informar de los errores
+    int linea();
+}
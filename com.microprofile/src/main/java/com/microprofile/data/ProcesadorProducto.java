@@ -0,0 +1,9 @@
+package com.microprofile.data;
+
+import java.io.IOException;
+
+// Recibe cada producto a medida que se lee del ResultSet, sin acumularlos en memoria
+@FunctionalInterface
+public interface ProcesadorProducto {
+    void procesar(Producto producto) throws IOException;
+}
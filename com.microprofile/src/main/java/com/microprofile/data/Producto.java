@@ -3,6 +3,7 @@ package com.microprofile.data;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import jakarta.json.bind.annotation.JsonbDateFormat;
+import jakarta.json.bind.annotation.JsonbTransient;
 
 public class Producto {
     private int id;
@@ -14,6 +15,10 @@ public class Producto {
     @JsonbDateFormat("yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime fechaCreacion;
 
+    // Versión para concurrencia optimista; viaja en la cabecera ETag, no en el cuerpo
+    @JsonbTransient
+    private Integer version;
+
     // Constructores
     public Producto() {
     }
@@ -34,6 +39,16 @@ public class Producto {
         this.cantidad = cantidad;
     }
 
+    public Producto(Producto otro) {
+        this.id = otro.id;
+        this.nombre = otro.nombre;
+        this.descripcion = otro.descripcion;
+        this.precio = otro.precio;
+        this.cantidad = otro.cantidad;
+        this.fechaCreacion = otro.fechaCreacion;
+        this.version = otro.version;
+    }
+
     // Getters y Setters
     public int getId() {
         return id;
@@ -83,6 +98,14 @@ public class Producto {
         this.fechaCreacion = fechaCreacion;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Producto{" +
@@ -1,5 +1,10 @@
 package com.microprofile.data;
 
+import com.microprofile.config.EnrutadorConexiones;
+import com.microprofile.util.MetricasConsultas;
+import com.microprofile.util.QueryLogger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,32 +14,79 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class ProductoDAO {
 
     private static final Logger LOGGER = Logger.getLogger(ProductoDAO.class.getName());
 
+    private static final int CAMPO_NOMBRE = 1;
+    private static final int CAMPO_DESCRIPCION = 1 << 1;
+    private static final int CAMPO_PRECIO = 1 << 2;
+    private static final int CAMPO_CANTIDAD = 1 << 3;
+    private static final int CON_VERSION = 1 << 4;
+
+    // Parámetros por consulta IN; SQL Server admite hasta 2100 por sentencia
+    private static final int MAXIMO_IN = 512;
+    // Filas por INSERT de varias filas: 5 parámetros cada una, por debajo de los 2100 de SQL Server
+    private static final int MAXIMO_FILAS_INSERCION = 400;
+
+    private final Map<Integer, String> sentenciasParciales = new ConcurrentHashMap<>();
+    private final Map<Proyeccion, String> sentenciasPagina = new ConcurrentHashMap<>();
+    private final Map<Proyeccion, String> sentenciasRecorrido = new ConcurrentHashMap<>();
+    private final Map<Integer, String> sentenciasPorIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> sentenciasInsercion = new ConcurrentHashMap<>();
+
+    @Inject
+    private EnrutadorConexiones enrutadorConexiones;
+
+    @Inject
+    private QueryLogger queryLogger;
+
     @Inject
-    private Connection connection;
+    private MetricasConsultas metricasConsultas;
+
+    @Inject
+    @ConfigProperty(name = "productos.listado.fetchSize", defaultValue = "500")
+    private int fetchSize;
+
+    @Inject
+    @ConfigProperty(name = "productos.batch.tamanoLote", defaultValue = "500")
+    private int tamanoLote;
+
+    // Requiere la columna productos.version (INT NOT NULL DEFAULT 0)
+    @Inject
+    @ConfigProperty(name = "productos.concurrenciaOptimista.habilitada", defaultValue = "false")
+    private boolean concurrenciaOptimista;
 
     // Crear un nuevo producto
     public Producto crear(Producto producto) throws SQLException {
         String sql = "INSERT INTO productos (nombre, descripcion, precio, cantidad) VALUES (?, ?, ?, ?)";
+        long inicio = System.nanoTime();
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        // La conexión se devuelve antes de releer la fila para no retener dos a la vez
+        try (Connection connection = abrirConexion();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, producto.getNombre());
             stmt.setString(2, producto.getDescripcion());
             stmt.setBigDecimal(3, producto.getPrecio());
             stmt.setInt(4, producto.getCantidad());
 
-            LOGGER.info("Ejecutando consulta INSERT: " + sql);
             int filasAfectadas = stmt.executeUpdate();
 
             if (filasAfectadas == 0) {
@@ -44,7 +96,7 @@ public class ProductoDAO {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     producto.setId(generatedKeys.getInt(1));
-                    return obtenerPorId(producto.getId()).orElse(producto);
+                    registrar("crear", producto.getId(), filasAfectadas, inicio);
                 } else {
                     throw new SQLException("Falló la creación del producto, no se obtuvo el ID.");
                 }
@@ -53,114 +105,545 @@ public class ProductoDAO {
             LOGGER.log(Level.SEVERE, "Error al crear producto: " + e.getMessage(), e);
             throw e;
         }
+
+        return obtenerPorId(producto.getId()).orElse(producto);
+    }
+
+    // Crear varios productos con INSERT de varias filas en una sola transacción
+    public List<Producto> crearLote(List<Producto> productos) throws SQLException {
+        long inicio = System.nanoTime();
+
+        try (Connection connection = abrirConexion()) {
+            connection.setAutoCommit(false);
+            try {
+                insertarConIds(connection, productos);
+                connection.commit();
+                registrar("crearLote", QueryLogger.SIN_ID, productos.size(), inicio);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al crear lote de productos: " + e.getMessage(), e);
+            throw e;
+        }
+
+        return productos;
+    }
+
+    // Actualizar varios productos con JDBC batch en una sola transacción
+    public int actualizarLote(List<Producto> productos) throws SQLException {
+        String sql = "UPDATE productos SET nombre = ?, descripcion = ?, precio = ?, cantidad = ?"
+                + (concurrenciaOptimista ? ", version = version + 1" : "") + " WHERE id = ?";
+
+        return ejecutarEnLotes("actualizarLote", sql, productos, (stmt, producto) -> {
+            stmt.setString(1, producto.getNombre());
+            stmt.setString(2, producto.getDescripcion());
+            stmt.setBigDecimal(3, producto.getPrecio());
+            stmt.setInt(4, producto.getCantidad());
+            stmt.setInt(5, producto.getId());
+        });
+    }
+
+    // Eliminar varios productos con JDBC batch en una sola transacción
+    public int eliminarLote(List<Integer> ids) throws SQLException {
+        String sql = "DELETE FROM productos WHERE id = ?";
+
+        return ejecutarEnLotes("eliminarLote", sql, ids, (stmt, id) -> stmt.setInt(1, id));
+    }
+
+    // Lote de una importación en una sola transacción. Con actualizarExistentes, los productos con ID
+    // se actualizan si existen; el resto se crea con un ID nuevo. Devuelve qué filas eran existentes.
+    // Los errores se registran solo en FINE: quien importa los informa fila a fila.
+    public boolean[] importarLote(List<Producto> productos, boolean actualizarExistentes) throws SQLException {
+        String actualizar = "UPDATE productos SET nombre = ?, descripcion = ?, precio = ?, cantidad = ?"
+                + (concurrenciaOptimista ? ", version = version + 1" : "") + " WHERE id = ?";
+        boolean[] existentes = new boolean[productos.size()];
+        // Si el lote falla se devuelven los IDs leídos: quien reintente no debe ver los generados
+        int[] idsOriginales = productos.stream().mapToInt(Producto::getId).toArray();
+        long inicio = System.nanoTime();
+
+        try (Connection connection = abrirConexion()) {
+            connection.setAutoCommit(false);
+            try {
+                List<Integer> conId = new ArrayList<>();
+                for (int i = 0; i < productos.size(); i++) {
+                    if (actualizarExistentes && productos.get(i).getId() > 0) {
+                        conId.add(i);
+                    }
+                }
+                if (!conId.isEmpty()) {
+                    try (PreparedStatement stmt = connection.prepareStatement(actualizar)) {
+                        for (int indice : conId) {
+                            Producto producto = productos.get(indice);
+                            stmt.setString(1, producto.getNombre());
+                            stmt.setString(2, producto.getDescripcion());
+                            stmt.setBigDecimal(3, producto.getPrecio());
+                            stmt.setInt(4, producto.getCantidad());
+                            stmt.setInt(5, producto.getId());
+                            stmt.addBatch();
+                        }
+                        int[] resultados = stmt.executeBatch();
+                        for (int i = 0; i < resultados.length; i++) {
+                            existentes[conId.get(i)] = resultados[i] > 0 || resultados[i] == Statement.SUCCESS_NO_INFO;
+                        }
+                    }
+                }
+
+                List<Producto> nuevos = new ArrayList<>();
+                for (int i = 0; i < productos.size(); i++) {
+                    if (!existentes[i]) {
+                        nuevos.add(productos.get(i));
+                    }
+                }
+                insertarConIds(connection, nuevos);
+                connection.commit();
+                registrar("importarLote", QueryLogger.SIN_ID, productos.size(), inicio);
+            } catch (SQLException e) {
+                connection.rollback();
+                for (int i = 0; i < productos.size(); i++) {
+                    productos.get(i).setId(idsOriginales[i]);
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error al importar lote de productos: " + e.getMessage(), e);
+            throw e;
+        }
+
+        return existentes;
     }
 
     // Obtener todos los productos
     public List<Producto> obtenerTodos() throws SQLException {
-        List<Producto> productos = new ArrayList<>();
         String sql = "SELECT * FROM productos";
+        long inicio = System.nanoTime();
 
-        LOGGER.info("Ejecutando consulta SELECT: " + sql);
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                productos.add(mapearProducto(rs));
-            }
-            LOGGER.info("Recuperados " + productos.size() + " productos de la base de datos");
+        try {
+            return leer(connection -> {
+                List<Producto> productos = new ArrayList<>();
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        productos.add(mapearProducto(rs));
+                    }
+                }
+                registrar("obtenerTodos", QueryLogger.SIN_ID, productos.size(), inicio);
+                return productos;
+            });
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al obtener productos: " + e.getMessage(), e);
             throw e;
         }
+    }
 
-        return productos;
+    // Obtener una página de productos ordenada por ID a partir de un cursor
+    public List<Producto> obtenerPagina(int despuesDeId, int limite) throws SQLException {
+        return obtenerPagina(despuesDeId, limite, Proyeccion.TODOS);
+    }
+
+    public List<Producto> obtenerPagina(int despuesDeId, int limite, Proyeccion proyeccion) throws SQLException {
+        String sql = sentenciasPagina.computeIfAbsent(proyeccion,
+                p -> seleccion(p) + " WHERE id > ? ORDER BY id OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
+        long inicio = System.nanoTime();
+
+        try {
+            return leer(connection -> {
+                List<Producto> productos = new ArrayList<>(limite);
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setInt(1, despuesDeId);
+                    stmt.setInt(2, limite);
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            productos.add(mapearProducto(rs, proyeccion));
+                        }
+                    }
+                }
+                registrar("obtenerPagina", despuesDeId, productos.size(), inicio);
+                return productos;
+            });
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al obtener página de productos: " + e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    // Buscar productos por filtros con una sentencia parametrizada. Con orden distinto de id el cursor es
+    // el par (valor de orden, id) de la última fila de la página anterior, con el valor en el filtro
+    public List<Producto> buscar(FiltroProductos filtro, Integer despuesDeId, int limite) throws SQLException {
+        return buscar(filtro, despuesDeId, limite, Proyeccion.TODOS);
+    }
+
+    public List<Producto> buscar(FiltroProductos filtro, Integer despuesDeId, int limite, Proyeccion proyeccion) throws SQLException {
+        List<Object> parametros = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(seleccion(proyeccion)).append(" WHERE 1 = 1");
+
+        condicion(sql, parametros, "precio >= ?", filtro.getPrecioMinimo());
+        condicion(sql, parametros, "precio <= ?", filtro.getPrecioMaximo());
+        condicion(sql, parametros, "cantidad >= ?", filtro.getCantidadMinima());
+        condicion(sql, parametros, "cantidad <= ?", filtro.getCantidadMaxima());
+        // El prefijo aprovecha el índice de nombre; "contiene" obliga a recorrerlo entero
+        if (filtro.getPrefijoNombre() != null) {
+            condicion(sql, parametros, "nombre LIKE ? ESCAPE '\\'", escaparLike(filtro.getPrefijoNombre()) + "%");
+        }
+        if (filtro.getNombreContiene() != null) {
+            condicion(sql, parametros, "nombre LIKE ? ESCAPE '\\'", "%" + escaparLike(filtro.getNombreContiene()) + "%");
+        }
+        if (filtro.getCreadoDesde() != null) {
+            condicion(sql, parametros, "fecha_creacion >= ?", Timestamp.valueOf(filtro.getCreadoDesde()));
+        }
+        if (filtro.getCreadoHasta() != null) {
+            condicion(sql, parametros, "fecha_creacion <= ?", Timestamp.valueOf(filtro.getCreadoHasta()));
+        }
+        if (despuesDeId != null) {
+            cursor(sql, parametros, filtro, despuesDeId);
+        }
+
+        // La columna sale de un enum, nunca de la petición; id desempata para un orden estable
+        String direccion = filtro.isDescendente() ? " DESC" : " ASC";
+        sql.append(" ORDER BY ").append(filtro.getOrden().getColumna()).append(direccion);
+        if (filtro.getOrden() != FiltroProductos.Orden.ID) {
+            sql.append(", id").append(direccion);
+        }
+        sql.append(" OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
+        parametros.add(limite);
+        long inicio = System.nanoTime();
+
+        try {
+            return leer(connection -> {
+                List<Producto> productos = new ArrayList<>(Math.min(limite, 1024));
+                try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < parametros.size(); i++) {
+                        stmt.setObject(i + 1, parametros.get(i));
+                    }
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            productos.add(mapearProducto(rs, proyeccion));
+                        }
+                    }
+                }
+                registrar("buscar", QueryLogger.SIN_ID, productos.size(), inicio);
+                return productos;
+            });
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al buscar productos: " + e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    // Recorrer todos los productos fila a fila sin cargarlos en una lista
+    public int recorrerTodos(ProcesadorProducto procesador) throws SQLException, IOException {
+        return recorrerTodos(procesador, Proyeccion.TODOS);
+    }
+
+    public int recorrerTodos(ProcesadorProducto procesador, Proyeccion proyeccion) throws SQLException, IOException {
+        return recorrerTodos(procesador, proyeccion, false);
+    }
+
+    // Como recorrerTodos pero siempre de la base principal, para copias que deben partir del estado confirmado
+    public int recorrerTodosEnPrincipal(ProcesadorProducto procesador, Proyeccion proyeccion) throws SQLException, IOException {
+        return recorrerTodos(procesador, proyeccion, true);
+    }
+
+    private int recorrerTodos(ProcesadorProducto procesador, Proyeccion proyeccion, boolean principal) throws SQLException, IOException {
+        String sql = sentenciasRecorrido.computeIfAbsent(proyeccion, p -> seleccion(p) + " ORDER BY id");
+        int[] filas = new int[1];
+        long inicio = System.nanoTime();
+
+        // Lo ya entregado al procesador no se puede deshacer: solo se repite en la principal sin filas leídas
+        try {
+            leer(connection -> {
+                try (Statement stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(fetchSize);
+
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        while (rs.next()) {
+                            procesador.procesar(mapearProducto(rs, proyeccion));
+                            filas[0]++;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            }, () -> filas[0] == 0, principal);
+            registrar("recorrerTodos", QueryLogger.SIN_ID, filas[0], inicio);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al recorrer productos: " + e.getMessage(), e);
+            throw e;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return filas[0];
     }
 
     // Obtener un producto por su ID
     public Optional<Producto> obtenerPorId(int id) throws SQLException {
-        String sql = "SELECT * FROM productos WHERE id = ?";
+        return obtenerPorId(id, false);
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            LOGGER.info("Ejecutando consulta: " + sql + " con ID=" + id);
+    // Como obtenerPorId pero siempre de la base principal, para comprobar precondiciones antes de escribir
+    public Optional<Producto> obtenerPorIdEnPrincipal(int id) throws SQLException {
+        return obtenerPorId(id, true);
+    }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Producto producto = mapearProducto(rs);
-                    LOGGER.info("Producto encontrado: " + producto);
-                    return Optional.of(producto);
+    private Optional<Producto> obtenerPorId(int id, boolean principal) throws SQLException {
+        String sql = "SELECT * FROM productos WHERE id = ?";
+        long inicio = System.nanoTime();
+
+        try {
+            return leer(connection -> {
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setInt(1, id);
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            Producto producto = mapearProducto(rs);
+                            registrar("obtenerPorId", id, 1, inicio);
+                            return Optional.of(producto);
+                        }
+                    }
                 }
-            }
+                registrar("obtenerPorId", id, 0, inicio);
+                return Optional.<Producto>empty();
+            }, () -> true, principal);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al obtener producto por ID: " + e.getMessage(), e);
             throw e;
         }
+    }
 
-        LOGGER.info("No se encontró producto con ID: " + id);
-        return Optional.empty();
+    // Obtener varios productos por ID con consultas IN de hasta MAXIMO_IN parámetros; los que no existen no aparecen
+    public Map<Integer, Producto> obtenerPorIds(Collection<Integer> ids) throws SQLException {
+        return obtenerPorIds(ids, false);
     }
 
-    // Actualizar un producto
-    public boolean actualizar(Producto producto) throws SQLException {
-        String sql = "UPDATE productos SET nombre = ?, descripcion = ?, precio = ?, cantidad = ? WHERE id = ?";
+    public Map<Integer, Producto> obtenerPorIdsEnPrincipal(Collection<Integer> ids) throws SQLException {
+        return obtenerPorIds(ids, true);
+    }
+
+    private Map<Integer, Producto> obtenerPorIds(Collection<Integer> ids, boolean principal) throws SQLException {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Integer> pendientes = new ArrayList<>(new LinkedHashSet<>(ids));
+        long inicio = System.nanoTime();
+
+        try {
+            return leer(connection -> leerPorIds(connection, pendientes, inicio), () -> true, principal);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al obtener productos por ID: " + e.getMessage(), e);
+            throw e;
+        }
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    private Map<Integer, Producto> leerPorIds(Connection connection, List<Integer> pendientes, long inicio) throws SQLException {
+        Map<Integer, Producto> productos = new HashMap<>(pendientes.size() * 2);
+        for (int desde = 0; desde < pendientes.size(); desde += MAXIMO_IN) {
+            List<Integer> bloque = pendientes.subList(desde, Math.min(desde + MAXIMO_IN, pendientes.size()));
+            // Se redondea a potencia de dos repitiendo el último ID para reutilizar pocos planes
+            int parametros = Integer.highestOneBit(bloque.size() * 2 - 1);
+            String sql = sentenciasPorIds.computeIfAbsent(parametros, n ->
+                    "SELECT * FROM productos WHERE id IN (" + String.join(", ", Collections.nCopies(n, "?")) + ")");
+
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parametros; i++) {
+                    stmt.setInt(i + 1, bloque.get(Math.min(i, bloque.size() - 1)));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Producto producto = mapearProducto(rs);
+                        productos.put(producto.getId(), producto);
+                    }
+                }
+            }
+        }
+        registrar("obtenerPorIds", QueryLogger.SIN_ID, productos.size(), inicio);
+        return productos;
+    }
+
+    // Actualizar un producto; si se indica versionEsperada solo se aplica sobre esa versión
+    public boolean actualizar(Producto producto, Integer versionEsperada) throws SQLException {
+        boolean conVersion = concurrenciaOptimista && versionEsperada != null;
+        String sql = "UPDATE productos SET nombre = ?, descripcion = ?, precio = ?, cantidad = ?"
+                + (concurrenciaOptimista ? ", version = version + 1" : "")
+                + " WHERE id = ?" + (conVersion ? " AND version = ?" : "");
+        long inicio = System.nanoTime();
+
+        int filasAfectadas;
+        try (Connection connection = abrirConexion();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, producto.getNombre());
             stmt.setString(2, producto.getDescripcion());
             stmt.setBigDecimal(3, producto.getPrecio());
             stmt.setInt(4, producto.getCantidad());
             stmt.setInt(5, producto.getId());
+            if (conVersion) {
+                stmt.setInt(6, versionEsperada);
+            }
 
-            LOGGER.info("Ejecutando actualización para producto ID: " + producto.getId());
-            int filasAfectadas = stmt.executeUpdate();
-            LOGGER.info("Filas afectadas: " + filasAfectadas);
-            return filasAfectadas > 0;
+            filasAfectadas = stmt.executeUpdate();
+            registrar("actualizar", producto.getId(), filasAfectadas, inicio);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al actualizar producto: " + e.getMessage(), e);
             throw e;
         }
+
+        return verificarResultado(producto.getId(), filasAfectadas, conVersion ? versionEsperada : null);
     }
 
-    // Actualizar parcialmente un producto
-    public boolean actualizarParcial(int id, Producto productoActualizado) throws SQLException {
-        Optional<Producto> productoExistente = obtenerPorId(id);
+    // Actualizar parcialmente un producto con un único UPDATE de los campos presentes
+    public boolean actualizarParcial(int id, Producto productoActualizado, Integer versionEsperada) throws SQLException {
+        int campos = 0;
+        if (productoActualizado.getNombre() != null) {
+            campos |= CAMPO_NOMBRE;
+        }
+        if (productoActualizado.getDescripcion() != null) {
+            campos |= CAMPO_DESCRIPCION;
+        }
+        if (productoActualizado.getPrecio() != null) {
+            campos |= CAMPO_PRECIO;
+        }
+        if (productoActualizado.getCantidad() > 0) {
+            campos |= CAMPO_CANTIDAD;
+        }
 
-        if (!productoExistente.isPresent()) {
-            return false;
+        // Sin campos que cambiar solo hay que confirmar que el producto existe. Con versión esperada
+        // la sentencia queda en "SET version = version + 1" y la comprueba como cualquier otra escritura
+        boolean conVersion = concurrenciaOptimista && versionEsperada != null;
+        if (campos == 0 && !conVersion) {
+            return existe(id);
         }
 
-        Producto producto = productoExistente.get();
+        String sql = sentenciaParcial(campos, conVersion);
+        long inicio = System.nanoTime();
 
-        // Actualizar solo los campos no nulos
-        if (productoActualizado.getNombre() != null) {
-            producto.setNombre(productoActualizado.getNombre());
+        int filasAfectadas;
+        try (Connection connection = abrirConexion();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int indice = 1;
+            if ((campos & CAMPO_NOMBRE) != 0) {
+                stmt.setString(indice++, productoActualizado.getNombre());
+            }
+            if ((campos & CAMPO_DESCRIPCION) != 0) {
+                stmt.setString(indice++, productoActualizado.getDescripcion());
+            }
+            if ((campos & CAMPO_PRECIO) != 0) {
+                stmt.setBigDecimal(indice++, productoActualizado.getPrecio());
+            }
+            if ((campos & CAMPO_CANTIDAD) != 0) {
+                stmt.setInt(indice++, productoActualizado.getCantidad());
+            }
+            stmt.setInt(indice++, id);
+            if (conVersion) {
+                stmt.setInt(indice, versionEsperada);
+            }
+
+            filasAfectadas = stmt.executeUpdate();
+            registrar("actualizarParcial", id, filasAfectadas, inicio);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al actualizar parcialmente producto: " + e.getMessage(), e);
+            throw e;
         }
 
-        if (productoActualizado.getDescripcion() != null) {
-            producto.setDescripcion(productoActualizado.getDescripcion());
+        return verificarResultado(id, filasAfectadas, conVersion ? versionEsperada : null);
+    }
+
+    // Descontar unidades en una sola sentencia, sin leer antes la fila: la condición impide que la
+    // cantidad quede negativa aunque haya reservas simultáneas. False si el producto no existe.
+    public boolean reservarStock(int id, int unidades) throws SQLException {
+        String sql = "UPDATE productos SET cantidad = cantidad - ?"
+                + (concurrenciaOptimista ? ", version = version + 1" : "") + " WHERE id = ? AND cantidad >= ?";
+        long inicio = System.nanoTime();
+
+        int filasAfectadas;
+        try (Connection connection = abrirConexion();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, unidades);
+            stmt.setInt(2, id);
+            stmt.setInt(3, unidades);
+
+            filasAfectadas = stmt.executeUpdate();
+            registrar("reservarStock", id, filasAfectadas, inicio);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al reservar stock: " + e.getMessage(), e);
+            throw e;
         }
 
-        if (productoActualizado.getPrecio() != null) {
-            producto.setPrecio(productoActualizado.getPrecio());
+        if (filasAfectadas > 0) {
+            return true;
         }
+        if (existe(id)) {
+            throw new StockInsuficienteException(id, unidades);
+        }
+        return false;
+    }
 
-        if (productoActualizado.getCantidad() > 0) {
-            producto.setCantidad(productoActualizado.getCantidad());
+    // Devolver unidades al stock; false si el producto no existe
+    public boolean liberarStock(int id, int unidades) throws SQLException {
+        String sql = "UPDATE productos SET cantidad = cantidad + ?"
+                + (concurrenciaOptimista ? ", version = version + 1" : "") + " WHERE id = ?";
+        long inicio = System.nanoTime();
+
+        try (Connection connection = abrirConexion();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, unidades);
+            stmt.setInt(2, id);
+
+            int filasAfectadas = stmt.executeUpdate();
+            registrar("liberarStock", id, filasAfectadas, inicio);
+            return filasAfectadas > 0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al liberar stock: " + e.getMessage(), e);
+            throw e;
         }
+    }
 
-        return actualizar(producto);
+    // Devolver a cada producto unidades arrendadas y no vendidas en una sola transacción. Solo suma:
+    // los descuentos se hacen con reservarStock, que nunca deja la cantidad en negativo
+    public int devolverStock(Map<Integer, Long> unidades) throws SQLException {
+        String sql = "UPDATE productos SET cantidad = cantidad + ?"
+                + (concurrenciaOptimista ? ", version = version + 1" : "") + " WHERE id = ?";
+
+        return ejecutarEnLotes("devolverStock", sql, new ArrayList<>(unidades.entrySet()), (stmt, devolucion) -> {
+            stmt.setLong(1, devolucion.getValue());
+            stmt.setInt(2, devolucion.getKey());
+        });
+    }
+
+    // Comprobar si existe un producto con el ID indicado
+    public boolean existe(int id) throws SQLException {
+        String sql = "SELECT 1 FROM productos WHERE id = ?";
+        long inicio = System.nanoTime();
+
+        try (Connection connection = abrirPrincipal();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                boolean existe = rs.next();
+                registrar("existe", id, existe ? 1 : 0, inicio);
+                return existe;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al comprobar existencia de producto: " + e.getMessage(), e);
+            throw e;
+        }
     }
 
     // Eliminar un producto
     public boolean eliminar(int id) throws SQLException {
         String sql = "DELETE FROM productos WHERE id = ?";
+        long inicio = System.nanoTime();
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = abrirConexion();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
 
-            LOGGER.info("Ejecutando eliminación para producto ID: " + id);
             int filasAfectadas = stmt.executeUpdate();
-            LOGGER.info("Filas afectadas: " + filasAfectadas);
+            registrar("eliminar", id, filasAfectadas, inicio);
             return filasAfectadas > 0;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al eliminar producto: " + e.getMessage(), e);
@@ -168,19 +651,229 @@ public class ProductoDAO {
         }
     }
 
+    // Con versión esperada, 0 filas puede ser un producto inexistente o un conflicto
+    private boolean verificarResultado(int id, int filasAfectadas, Integer versionEsperada) throws SQLException {
+        if (filasAfectadas > 0) {
+            return true;
+        }
+        if (versionEsperada != null && existe(id)) {
+            throw new ConflictoVersionException(id, versionEsperada);
+        }
+        return false;
+    }
+
+    // El SQL de cada combinación de campos se genera una sola vez
+    private String sentenciaParcial(int campos, boolean conVersion) {
+        return sentenciasParciales.computeIfAbsent(conVersion ? campos | CON_VERSION : campos, clave -> {
+            StringJoiner asignaciones = new StringJoiner(", ");
+            if ((campos & CAMPO_NOMBRE) != 0) {
+                asignaciones.add("nombre = ?");
+            }
+            if ((campos & CAMPO_DESCRIPCION) != 0) {
+                asignaciones.add("descripcion = ?");
+            }
+            if ((campos & CAMPO_PRECIO) != 0) {
+                asignaciones.add("precio = ?");
+            }
+            if ((campos & CAMPO_CANTIDAD) != 0) {
+                asignaciones.add("cantidad = ?");
+            }
+            if (concurrenciaOptimista) {
+                asignaciones.add("version = version + 1");
+            }
+            return "UPDATE productos SET " + asignaciones + " WHERE id = ?" + (conVersion ? " AND version = ?" : "");
+        });
+    }
+
+    // (columna, id) > (?, ?) desarrollado para SQL Server, que no compara filas. Los nulos van primero
+    // en orden ascendente y al final en descendente, como en el ORDER BY
+    private static void cursor(StringBuilder sql, List<Object> parametros, FiltroProductos filtro, int despuesDeId) {
+        boolean descendente = filtro.isDescendente();
+        String mayor = descendente ? " < ?" : " > ?";
+        if (filtro.getOrden() == FiltroProductos.Orden.ID) {
+            condicion(sql, parametros, "id" + mayor, despuesDeId);
+            return;
+        }
+        String columna = filtro.getOrden().getColumna();
+        Object valor = filtro.getValorCursor();
+        if (valor instanceof LocalDateTime) {
+            valor = Timestamp.valueOf((LocalDateTime) valor);
+        }
+        if (valor == null) {
+            sql.append(descendente
+                    ? " AND (" + columna + " IS NULL AND id < ?)"
+                    : " AND (" + columna + " IS NOT NULL OR id > ?)");
+            parametros.add(despuesDeId);
+            return;
+        }
+        sql.append(" AND (").append(columna).append(mayor)
+                .append(" OR (").append(columna).append(" = ? AND id").append(mayor).append(")")
+                .append(descendente ? " OR " + columna + " IS NULL)" : ")");
+        parametros.add(valor);
+        parametros.add(valor);
+        parametros.add(despuesDeId);
+    }
+
+    private static void condicion(StringBuilder sql, List<Object> parametros, String condicion, Object valor) {
+        if (valor != null) {
+            sql.append(" AND ").append(condicion);
+            parametros.add(valor);
+        }
+    }
+
+    // Los comodines que escriba el usuario se buscan literalmente
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace("[", "\\[");
+    }
+
+    // Toma una conexión de la base principal midiendo cuánto hubo que esperar por ella
+    private Connection abrirConexion() throws SQLException {
+        long inicio = System.nanoTime();
+        Connection connection = enrutadorConexiones.escritura();
+        metricasConsultas.registrarAdquisicion(inicio);
+        return connection;
+    }
+
+    // Lecturas que deben ver lo último confirmado; no abren la ventana de lectura propia
+    private Connection abrirPrincipal() throws SQLException {
+        long inicio = System.nanoTime();
+        Connection connection = enrutadorConexiones.principal();
+        metricasConsultas.registrarAdquisicion(inicio);
+        return connection;
+    }
+
+    // Para consultas que pueden servirse desde una réplica; si la réplica falla se repiten en la principal
+    private <T> T leer(EnrutadorConexiones.Lectura<T> lectura) throws SQLException {
+        return leer(lectura, () -> true, false);
+    }
+
+    private <T> T leer(EnrutadorConexiones.Lectura<T> lectura, BooleanSupplier reintentable, boolean principal) throws SQLException {
+        if (principal) {
+            try (Connection connection = abrirPrincipal()) {
+                return lectura.ejecutar(connection);
+            }
+        }
+        return enrutadorConexiones.leer(lectura, reintentable, metricasConsultas::registrarAdquisicion);
+    }
+
+    private void registrar(String operacion, int id, int filas, long inicio) {
+        queryLogger.registrar(operacion, id, filas, inicio);
+        metricasConsultas.registrarConsulta(operacion, filas, inicio);
+    }
+
+    @FunctionalInterface
+    private interface Vinculador<T> {
+        void vincular(PreparedStatement stmt, T elemento) throws SQLException;
+    }
+
+    // Ejecuta la sentencia en bloques de tamanoLote y confirma todo al final
+    private <T> int ejecutarEnLotes(String operacion, String sql, List<T> elementos, Vinculador<T> vinculador) throws SQLException {
+        int filasAfectadas = 0;
+        long inicio = System.nanoTime();
+
+        try (Connection connection = abrirConexion()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (int desde = 0; desde < elementos.size(); desde += tamanoLote) {
+                    int hasta = Math.min(desde + tamanoLote, elementos.size());
+                    for (T elemento : elementos.subList(desde, hasta)) {
+                        vinculador.vincular(stmt, elemento);
+                        stmt.addBatch();
+                    }
+                    for (int resultado : stmt.executeBatch()) {
+                        // SUCCESS_NO_INFO: el driver no informa filas, se cuenta como una
+                        filasAfectadas += resultado == Statement.SUCCESS_NO_INFO ? 1 : Math.max(resultado, 0);
+                    }
+                }
+                connection.commit();
+                registrar(operacion, QueryLogger.SIN_ID, filasAfectadas, inicio);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al ejecutar lote: " + e.getMessage(), e);
+            throw e;
+        }
+
+        return filasAfectadas;
+    }
+
+    // Inserta en bloques de varias filas y asigna a cada producto su ID. Con JDBC batch el driver de
+    // SQL Server solo devuelve la última identidad, y OUTPUT en un INSERT no garantiza el orden de las
+    // filas: el MERGE devuelve junto a cada ID la posición de la fila de origen
+    private void insertarConIds(Connection connection, List<Producto> productos) throws SQLException {
+        int filasPorSentencia = Math.max(1, Math.min(tamanoLote, MAXIMO_FILAS_INSERCION));
+        for (int desde = 0; desde < productos.size(); desde += filasPorSentencia) {
+            List<Producto> bloque = productos.subList(desde, Math.min(desde + filasPorSentencia, productos.size()));
+            String sql = sentenciasInsercion.computeIfAbsent(bloque.size(), ProductoDAO::sentenciaInsercion);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                int parametro = 1;
+                for (int fila = 0; fila < bloque.size(); fila++) {
+                    Producto producto = bloque.get(fila);
+                    stmt.setInt(parametro++, fila);
+                    stmt.setString(parametro++, producto.getNombre());
+                    stmt.setString(parametro++, producto.getDescripcion());
+                    stmt.setBigDecimal(parametro++, producto.getPrecio());
+                    stmt.setInt(parametro++, producto.getCantidad());
+                }
+                int asignados = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        bloque.get(rs.getInt(1)).setId(rs.getInt(2));
+                        asignados++;
+                    }
+                }
+                if (asignados != bloque.size()) {
+                    throw new SQLException("Falló la creación de productos: se obtuvieron " + asignados
+                            + " IDs para " + bloque.size() + " filas");
+                }
+            }
+        }
+    }
+
+    private static String sentenciaInsercion(int filas) {
+        StringJoiner valores = new StringJoiner(", ");
+        for (int i = 0; i < filas; i++) {
+            valores.add("(?, ?, ?, ?, ?)");
+        }
+        return "MERGE INTO productos USING (VALUES " + valores + ")"
+                + " AS origen (fila, nombre, descripcion, precio, cantidad) ON 1 = 0"
+                + " WHEN NOT MATCHED THEN INSERT (nombre, descripcion, precio, cantidad)"
+                + " VALUES (origen.nombre, origen.descripcion, origen.precio, origen.cantidad)"
+                + " OUTPUT origen.fila, INSERTED.id;";
+    }
+
+    // SELECT con solo las columnas de la proyección (más la versión si se usa concurrencia optimista)
+    private String seleccion(Proyeccion proyeccion) {
+        return "SELECT " + proyeccion.getColumnas() + (concurrenciaOptimista ? ", version" : "") + " FROM productos";
+    }
+
     // Mapear ResultSet a objeto Producto
     private Producto mapearProducto(ResultSet rs) throws SQLException {
+        return mapearProducto(rs, Proyeccion.TODOS);
+    }
+
+    // Las columnas que no están en la proyección quedan a null (o 0 en cantidad)
+    private Producto mapearProducto(ResultSet rs, Proyeccion proyeccion) throws SQLException {
         try {
             int id = rs.getInt("id");
-            String nombre = rs.getString("nombre");
-            String descripcion = rs.getString("descripcion");
-            BigDecimal precio = rs.getBigDecimal("precio");
-            int cantidad = rs.getInt("cantidad");
-
-            Timestamp timestamp = rs.getTimestamp("fecha_creacion");
-            LocalDateTime fechaCreacion = timestamp != null ? timestamp.toLocalDateTime() : null;
+            String nombre = proyeccion.incluye(Proyeccion.NOMBRE) ? rs.getString("nombre") : null;
+            String descripcion = proyeccion.incluye(Proyeccion.DESCRIPCION) ? rs.getString("descripcion") : null;
+            BigDecimal precio = proyeccion.incluye(Proyeccion.PRECIO) ? rs.getBigDecimal("precio") : null;
+            int cantidad = proyeccion.incluye(Proyeccion.CANTIDAD) ? rs.getInt("cantidad") : 0;
+
+            LocalDateTime fechaCreacion = null;
+            if (proyeccion.incluye(Proyeccion.FECHA_CREACION)) {
+                Timestamp timestamp = rs.getTimestamp("fecha_creacion");
+                fechaCreacion = timestamp != null ? timestamp.toLocalDateTime() : null;
+            }
 
-            return new Producto(id, nombre, descripcion, precio, cantidad, fechaCreacion);
+            Producto producto = new Producto(id, nombre, descripcion, precio, cantidad, fechaCreacion);
+            if (concurrenciaOptimista) {
+                producto.setVersion(rs.getInt("version"));
+            }
+            return producto;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al mapear resultado a Producto: " + e.getMessage(), e);
             throw e;
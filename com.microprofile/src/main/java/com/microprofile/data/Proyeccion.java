@@ -0,0 +1,88 @@
+package com.microprofile.data;
+
+import java.util.StringJoiner;
+
+// Subconjunto de columnas de productos a leer y serializar. El id se incluye siempre
+// (hace falta para cursores y enlaces). Hay una instancia por combinación posible.
+public final class Proyeccion {
+
+    public static final int NOMBRE = 1;
+    public static final int DESCRIPCION = 1 << 1;
+    public static final int PRECIO = 1 << 2;
+    public static final int CANTIDAD = 1 << 3;
+    public static final int FECHA_CREACION = 1 << 4;
+
+    private static final String[] PROPIEDADES = {"nombre", "descripcion", "precio", "cantidad", "fechaCreacion"};
+    private static final String[] COLUMNAS = {"nombre", "descripcion", "precio", "cantidad", "fecha_creacion"};
+    private static final Proyeccion[] INSTANCIAS = new Proyeccion[1 << PROPIEDADES.length];
+
+    static {
+        for (int mascara = 0; mascara < INSTANCIAS.length; mascara++) {
+            INSTANCIAS[mascara] = new Proyeccion(mascara);
+        }
+    }
+
+    public static final Proyeccion TODOS = INSTANCIAS[INSTANCIAS.length - 1];
+
+    private final int mascara;
+    private final String columnas;
+
+    private Proyeccion(int mascara) {
+        this.mascara = mascara;
+        StringJoiner lista = new StringJoiner(", ");
+        lista.add("id");
+        for (int i = 0; i < COLUMNAS.length; i++) {
+            if ((mascara & (1 << i)) != 0) {
+                lista.add(COLUMNAS[i]);
+            }
+        }
+        this.columnas = lista.toString();
+    }
+
+    public static Proyeccion de(int mascara) {
+        return INSTANCIAS[mascara & (INSTANCIAS.length - 1)];
+    }
+
+    // Lista de propiedades JSON separadas por comas, p. ej. "id,nombre,precio"
+    public static Proyeccion de(String campos) {
+        int mascara = 0;
+        for (String campo : campos.split(",")) {
+            String propiedad = campo.trim();
+            if (propiedad.isEmpty() || propiedad.equals("id")) {
+                continue;
+            }
+            int indice = indiceDe(propiedad);
+            if (indice < 0) {
+                throw new IllegalArgumentException("Campo desconocido: " + propiedad);
+            }
+            mascara |= 1 << indice;
+        }
+        return INSTANCIAS[mascara];
+    }
+
+    public boolean incluye(int campo) {
+        return (mascara & campo) != 0;
+    }
+
+    public boolean esCompleta() {
+        return this == TODOS;
+    }
+
+    public int getMascara() {
+        return mascara;
+    }
+
+    // Columnas para la cláusula SELECT, empezando por id
+    public String getColumnas() {
+        return columnas;
+    }
+
+    private static int indiceDe(String propiedad) {
+        for (int i = 0; i < PROPIEDADES.length; i++) {
+            if (PROPIEDADES[i].equals(propiedad)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,50 @@
+package com.microprofile.data;
+
+import java.math.BigDecimal;
+
+// Restricciones de la tabla productos que se comprueban antes de escribir, para responder 400 (o un
+// error por fila al importar) en lugar de un error de la base de datos: nombre obligatorio de hasta
+// 100 caracteres, descripción de hasta 500, precio obligatorio no negativo que quepa en
+// DECIMAL(10, 2) y cantidad no negativa.
+public final class ReglasProducto {
+
+    public static final int MAXIMO_NOMBRE = 100;
+    public static final int MAXIMO_DESCRIPCION = 500;
+    private static final BigDecimal MAXIMO_PRECIO = new BigDecimal("99999999.99");
+
+    private ReglasProducto() {
+    }
+
+    // Null si el producto puede crearse o reemplazar a otro; si no, el motivo
+    public static String error(Producto producto) {
+        if (producto.getNombre() == null || producto.getNombre().isBlank()) {
+            return "El nombre es obligatorio";
+        }
+        if (producto.getPrecio() == null) {
+            return "El precio es obligatorio";
+        }
+        return errorParcial(producto);
+    }
+
+    // Para PATCH: solo los campos presentes
+    public static String errorParcial(Producto producto) {
+        String nombre = producto.getNombre();
+        if (nombre != null && (nombre.isBlank() || nombre.length() > MAXIMO_NOMBRE)) {
+            return "El nombre no puede estar vacío ni superar " + MAXIMO_NOMBRE + " caracteres";
+        }
+        String descripcion = producto.getDescripcion();
+        if (descripcion != null && descripcion.length() > MAXIMO_DESCRIPCION) {
+            return "La descripción no puede superar " + MAXIMO_DESCRIPCION + " caracteres";
+        }
+        BigDecimal precio = producto.getPrecio();
+        if (precio != null && (precio.signum() < 0 || precio.stripTrailingZeros().scale() > 2
+                || precio.compareTo(MAXIMO_PRECIO) > 0)) {
+            return "El precio debe estar entre 0 y " + MAXIMO_PRECIO + " con dos decimales como máximo: "
+                    + precio.toPlainString();
+        }
+        if (producto.getCantidad() < 0) {
+            return "La cantidad no puede ser negativa: " + producto.getCantidad();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.microprofile.data;
+
+import java.sql.SQLException;
+
+// El producto existe pero no le quedan unidades suficientes para la reserva
+public class StockInsuficienteException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+
+    public StockInsuficienteException(int id, int unidades) {
+        super("El producto con ID " + id + " no tiene stock suficiente para reservar " + unidades + " unidades");
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
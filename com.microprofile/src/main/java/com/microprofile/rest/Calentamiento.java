@@ -0,0 +1,132 @@
+package com.microprofile.rest;
+
+import com.microprofile.config.ConnectionPool;
+import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.service.ProductoService;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+// Fase opcional de calentamiento: al arrancar repite las lecturas más habituales (página del listado
+// y producto por ID) a través de ProductoService y serializa el resultado en JSON, CBOR y JSON-B, para
+// que el JIT y las cachés estén hechas antes de recibir tráfico. La readiness queda DOWN mientras dura.
+// Espera a que el pool entregue una conexión antes de empezar, para no abrir el circuito del servicio.
+@Readiness
+@ApplicationScoped
+public class Calentamiento implements HealthCheck {
+
+    private static final Logger LOGGER = Logger.getLogger(Calentamiento.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "productos.calentamiento.habilitado", defaultValue = "false")
+    private boolean habilitado;
+
+    @Inject
+    @ConfigProperty(name = "productos.calentamiento.iteraciones", defaultValue = "500")
+    private int iteraciones;
+
+    @Inject
+    @ConfigProperty(name = "productos.calentamiento.tamanoPagina", defaultValue = "50")
+    private int tamanoPagina;
+
+    // Pasado este tiempo se da por terminado aunque falten iteraciones o la base de datos no responda
+    @Inject
+    @ConfigProperty(name = "productos.calentamiento.maxSegundos", defaultValue = "60")
+    private long maxSegundos;
+
+    @Inject
+    private ProductoService productoService;
+
+    @Inject
+    private ConnectionPool connectionPool;
+
+    private volatile boolean terminado;
+    private volatile int realizadas;
+
+    void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        if (!habilitado) {
+            terminado = true;
+            return;
+        }
+        Thread hilo = new Thread(this::calentar, "calentamiento");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("calentamiento")
+                .status(terminado)
+                .withData("iteraciones", realizadas)
+                .build();
+    }
+
+    private void calentar() {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.SECONDS.toNanos(maxSegundos);
+        Jsonb jsonb = JsonbBuilder.create();
+        try {
+            if (!esperarBaseDatos(limite)) {
+                LOGGER.warning("Calentamiento omitido: la base de datos no respondió en " + maxSegundos + " s");
+                return;
+            }
+            for (int i = 0; i < iteraciones && System.nanoTime() < limite; i++) {
+                List<Producto> pagina = productoService.listarPagina(0, tamanoPagina, Proyeccion.TODOS);
+                // Los generadores cierran la salida al terminar; una nueva en cada escritura
+                ProductoJson.lista(pagina, Proyeccion.TODOS).write(OutputStream.nullOutputStream());
+                ProductoCbor.lista(pagina, Proyeccion.TODOS).write(OutputStream.nullOutputStream());
+                if (!pagina.isEmpty()) {
+                    Producto producto = productoService.obtenerProducto(pagina.get(i % pagina.size()).getId()).orElse(pagina.get(0));
+                    ProductoJson.objeto(producto, Proyeccion.TODOS).write(OutputStream.nullOutputStream());
+                    // Los cuerpos de POST y PUT se leen con JSON-B
+                    jsonb.fromJson(jsonb.toJson(producto), Producto.class);
+                }
+                realizadas = i + 1;
+            }
+            LOGGER.info("Calentamiento terminado: " + realizadas + " iteraciones en "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) + " ms");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Calentamiento interrumpido tras " + realizadas + " iteraciones: " + e.getMessage(), e);
+        } finally {
+            cerrar(jsonb);
+            terminado = true;
+        }
+    }
+
+    // Jsonb.close() declara Exception; cerrarlo a mano evita que interrumpa el calentamiento
+    private static void cerrar(Jsonb jsonb) {
+        try {
+            jsonb.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "No se pudo cerrar el Jsonb del calentamiento: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean esperarBaseDatos(long limite) throws InterruptedException {
+        while (System.nanoTime() < limite) {
+            // Basta con obtener una conexión
+            try {
+                connectionPool.getConnection().close();
+                return true;
+            } catch (SQLException e) {
+                LOGGER.fine("Calentamiento a la espera de la base de datos: " + e.getMessage());
+                TimeUnit.SECONDS.sleep(1);
+            }
+        }
+        return false;
+    }
+}
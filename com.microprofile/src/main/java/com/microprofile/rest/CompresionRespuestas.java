@@ -0,0 +1,225 @@
+package com.microprofile.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Comprime con gzip o deflate las respuestas que superan el umbral si el cliente lo acepta.
+// El cuerpo se retiene hasta llegar al umbral: las respuestas pequeñas salen tal cual, sin
+// gastar CPU. La codificación se elige en el filtro de petición y se guarda como propiedad
+// porque la respuesta puede escribirse en otro hilo (métodos asíncronos).
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompresionRespuestas implements ContainerRequestFilter, WriterInterceptor {
+
+    private static final String PROPIEDAD = CompresionRespuestas.class.getName() + ".codificacion";
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+
+    @Inject
+    @ConfigProperty(name = "productos.http.compresion.habilitada", defaultValue = "true")
+    private boolean habilitada;
+
+    @Inject
+    @ConfigProperty(name = "productos.http.compresion.umbralBytes", defaultValue = "1024")
+    private int umbralBytes;
+
+    // 1 más rápido, 9 más compacto
+    @Inject
+    @ConfigProperty(name = "productos.http.compresion.nivel", defaultValue = "5")
+    private int nivel;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (!habilitada) {
+            return;
+        }
+        // Los eventos SSE se envían de uno en uno y no se pueden retener
+        if (DifusorCambios.esSuscripcion(resourceInfo)) {
+            return;
+        }
+        String codificacion = codificacionAceptada(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (codificacion != null) {
+            requestContext.setProperty(PROPIEDAD, codificacion);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Object codificacion = context.getProperty(PROPIEDAD);
+        MultivaluedMap<String, Object> cabeceras = context.getHeaders();
+        if (codificacion == null || cabeceras.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+
+        cabeceras.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        SalidaConUmbral salida = new SalidaConUmbral(context.getOutputStream(), cabeceras, (String) codificacion);
+        context.setOutputStream(salida);
+        try {
+            context.proceed();
+            salida.terminar();
+        } finally {
+            salida.liberar();
+        }
+    }
+
+    // gzip o deflate según el q de cada uno (o el de *); null si ninguno es aceptable
+    static String codificacionAceptada(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double comodin = -1;
+        for (String elemento : acceptEncoding.split(",")) {
+            String[] partes = elemento.split(";");
+            String nombre = partes[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (nombre.equals(GZIP) || nombre.equals("x-gzip")) {
+                gzip = q;
+            } else if (nombre.equals(DEFLATE)) {
+                deflate = q;
+            } else if (nombre.equals("*")) {
+                comodin = q;
+            }
+        }
+        double qGzip = gzip >= 0 ? gzip : comodin;
+        double qDeflate = deflate >= 0 ? deflate : comodin;
+        if (qGzip <= 0 && qDeflate <= 0) {
+            return null;
+        }
+        return qGzip >= qDeflate ? GZIP : DEFLATE;
+    }
+
+    // Retiene hasta umbralBytes; si se superan, pone Content-Encoding (aún no se ha enviado nada)
+    // y sigue comprimiendo. Si no se llega, terminar() escribe lo retenido sin comprimir.
+    private final class SalidaConUmbral extends OutputStream {
+        private final OutputStream destino;
+        private final MultivaluedMap<String, Object> cabeceras;
+        private final String codificacion;
+        private ByteArrayOutputStream retenido = new ByteArrayOutputStream();
+        private DeflaterOutputStream comprimido;
+        private Deflater deflater;
+        private boolean terminada;
+
+        private SalidaConUmbral(OutputStream destino, MultivaluedMap<String, Object> cabeceras, String codificacion) {
+            this.destino = destino;
+            this.cabeceras = cabeceras;
+            this.codificacion = codificacion;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (comprimido != null) {
+                comprimido.write(b, off, len);
+                return;
+            }
+            if (retenido.size() + len <= umbralBytes) {
+                retenido.write(b, off, len);
+                return;
+            }
+            comprimir();
+            comprimido.write(b, off, len);
+        }
+
+        // Mientras se retiene no hay nada que vaciar
+        @Override
+        public void flush() throws IOException {
+            if (comprimido != null) {
+                comprimido.flush();
+            }
+        }
+
+        // Los generadores JSON cierran la salida al terminar
+        @Override
+        public void close() throws IOException {
+            terminar();
+            destino.close();
+        }
+
+        private void comprimir() throws IOException {
+            cabeceras.putSingle(HttpHeaders.CONTENT_ENCODING, codificacion);
+            cabeceras.remove(HttpHeaders.CONTENT_LENGTH);
+            if (GZIP.equals(codificacion)) {
+                Gzip gzip = new Gzip(destino, nivel);
+                deflater = gzip.deflater();
+                comprimido = gzip;
+            } else {
+                deflater = new Deflater(nivel);
+                comprimido = new DeflaterOutputStream(destino, deflater, 8192);
+            }
+            retenido.writeTo(comprimido);
+            retenido = null;
+        }
+
+        private void terminar() throws IOException {
+            if (terminada) {
+                return;
+            }
+            terminada = true;
+            if (comprimido != null) {
+                comprimido.finish();
+            } else {
+                retenido.writeTo(destino);
+            }
+            destino.flush();
+        }
+
+        // El Deflater reserva memoria nativa; no se espera al recolector
+        private void liberar() {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+    }
+
+    // GZIPOutputStream no deja elegir el nivel ni liberar su Deflater sin cerrar la salida
+    private static final class Gzip extends GZIPOutputStream {
+        private Gzip(OutputStream salida, int nivel) throws IOException {
+            super(salida, 8192);
+            def.setLevel(nivel);
+        }
+
+        private Deflater deflater() {
+            return def;
+        }
+    }
+}
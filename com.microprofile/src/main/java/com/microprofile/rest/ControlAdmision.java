@@ -0,0 +1,83 @@
+package com.microprofile.rest;
+
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Control de admisión: cada petición ocupa un hueco del límite de su clase (GET y HEAD son lecturas,
+// el resto escrituras) y lo libera al tener la respuesta. Por encima del límite se responde al
+// momento con estadoRechazo y Retry-After en lugar de hacer cola hasta agotar el timeout.
+// La escritura del cuerpo de las respuestas en streaming queda fuera de la medida. Las excepciones
+// sin mapear las convierte en respuesta ErroresNoControlados, así el hueco se libera siempre aquí.
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class ControlAdmision implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String LIMITE = ControlAdmision.class.getName() + ".limite";
+    private static final String INICIO = ControlAdmision.class.getName() + ".inicio";
+
+    @Inject
+    private LimitesAdmision limitesAdmision;
+
+    // 503 o 429
+    @Inject
+    @ConfigProperty(name = "productos.admision.estadoRechazo", defaultValue = "503")
+    private int estadoRechazo;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.retryAfterSegundos", defaultValue = "1")
+    private int retryAfterSegundos;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (!limitesAdmision.isHabilitada()) {
+            return;
+        }
+        // Las suscripciones SSE quedan abiertas y no se cuentan
+        if (DifusorCambios.esSuscripcion(resourceInfo)) {
+            return;
+        }
+
+        String metodo = requestContext.getMethod();
+        boolean escritura = !HttpMethod.GET.equals(metodo) && !HttpMethod.HEAD.equals(metodo) && !HttpMethod.OPTIONS.equals(metodo);
+        LimitesAdmision.Limite limite = limitesAdmision.adquirir(escritura);
+        if (limite == null) {
+            requestContext.abortWith(Response.status(estadoRechazo)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSegundos)
+                    .type(MediaType.TEXT_PLAIN_TYPE.withCharset("UTF-8"))
+                    .entity("Servicio saturado, vuelva a intentarlo en " + retryAfterSegundos + " s")
+                    .build());
+            return;
+        }
+        requestContext.setProperty(LIMITE, limite);
+        requestContext.setProperty(INICIO, System.nanoTime());
+    }
+
+    // También se ejecuta con las peticiones rechazadas o que terminan en excepción (ya mapeada)
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object limite = requestContext.getProperty(LIMITE);
+        if (limite == null) {
+            return;
+        }
+        requestContext.removeProperty(LIMITE);
+        long duracion = System.nanoTime() - (Long) requestContext.getProperty(INICIO);
+        // Los 5xx salen de errores de base de datos, bulkhead lleno, timeout o circuito abierto
+        ((LimitesAdmision.Limite) limite).salir(duracion, responseContext.getStatus() >= 500);
+    }
+}
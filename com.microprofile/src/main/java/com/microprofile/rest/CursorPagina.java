@@ -0,0 +1,98 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.FiltroProductos;
+import com.microprofile.data.Producto;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+// Cursor del parámetro after. Al ordenar por id es el ID de la última fila, como siempre; con otro
+// orden lleva también el valor de esa columna, para que ProductoDAO.buscar siga por (valor, id) sin
+// OFFSET. Va en Base64 URL con el orden y la dirección, y solo vale para el mismo sort.
+final class CursorPagina {
+
+    private CursorPagina() {
+    }
+
+    // Sin orden por columna el cursor es el ID tal cual
+    static String codificar(FiltroProductos filtro, Producto ultimo) {
+        if (filtro == null || filtro.getOrden() == FiltroProductos.Orden.ID) {
+            return Integer.toString(ultimo.getId());
+        }
+        StringBuilder texto = new StringBuilder()
+                .append(filtro.getOrden().name()).append(':')
+                .append(filtro.isDescendente() ? 'D' : 'A').append(':')
+                .append(ultimo.getId());
+        Object valor = valor(filtro.getOrden(), ultimo);
+        if (valor != null) {
+            texto.append(':').append(valor instanceof BigDecimal ? ((BigDecimal) valor).toPlainString() : valor);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Devuelve el ID del cursor y deja el valor de orden en el filtro
+    static int aplicar(String cursor, FiltroProductos filtro) {
+        if (filtro == null || filtro.getOrden() == FiltroProductos.Orden.ID) {
+            try {
+                return Integer.parseInt(cursor.trim());
+            } catch (NumberFormatException e) {
+                throw invalido(cursor);
+            }
+        }
+        String[] partes;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8).split(":", 4);
+        } catch (IllegalArgumentException e) {
+            throw invalido(cursor);
+        }
+        String direccion = filtro.isDescendente() ? "D" : "A";
+        if (partes.length < 3 || !partes[0].equals(filtro.getOrden().name()) || !partes[1].equals(direccion)) {
+            throw invalido(cursor);
+        }
+        try {
+            int id = Integer.parseInt(partes[2]);
+            filtro.setValorCursor(partes.length == 4 ? convertir(filtro.getOrden(), partes[3]) : null);
+            return id;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw invalido(cursor);
+        }
+    }
+
+    private static Object valor(FiltroProductos.Orden orden, Producto producto) {
+        switch (orden) {
+            case NOMBRE:
+                return producto.getNombre();
+            case PRECIO:
+                return producto.getPrecio();
+            case CANTIDAD:
+                return producto.getCantidad();
+            case FECHA_CREACION:
+                return producto.getFechaCreacion();
+            default:
+                return null;
+        }
+    }
+
+    private static Object convertir(FiltroProductos.Orden orden, String texto) {
+        switch (orden) {
+            case PRECIO:
+                return new BigDecimal(texto);
+            case CANTIDAD:
+                return Integer.valueOf(texto);
+            case FECHA_CREACION:
+                return LocalDateTime.parse(texto);
+            default:
+                return texto;
+        }
+    }
+
+    private static WebApplicationException invalido(String cursor) {
+        return new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                .entity("Valor inválido para el parámetro after: " + cursor)
+                .build());
+    }
+}
@@ -0,0 +1,293 @@
+package com.microprofile.rest;
+
+import com.microprofile.service.CambioProducto;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Reparte los cambios de productos a los clientes de GET /productos/events. Guarda los últimos
+// eventos para reenviarlos a quien reconecte con Last-Event-ID. Cada suscriptor tiene una cola
+// acotada y un solo envío en curso; si la cola se llena se cierra su conexión y el cliente, al
+// reconectar, recupera lo perdido del historial o recibe un aviso de recarga. Los envíos van en
+// hilos propios y con tiempo máximo: un cliente atascado se cierra sin retrasar a los demás.
+@ApplicationScoped
+public class DifusorCambios {
+
+    private static final Logger LOGGER = Logger.getLogger(DifusorCambios.class.getName());
+
+    static final String CONECTADO = "conectado";
+    static final String RECARGAR = "recargar";
+
+    @Inject
+    @ConfigProperty(name = "productos.eventos.historial", defaultValue = "1024")
+    private int tamanoHistorial;
+
+    @Inject
+    @ConfigProperty(name = "productos.eventos.bufferSuscriptor", defaultValue = "256")
+    private int bufferSuscriptor;
+
+    @Inject
+    @ConfigProperty(name = "productos.eventos.maxSuscriptores", defaultValue = "500")
+    private int maxSuscriptores;
+
+    // Mantiene viva la conexión a través de proxies y detecta clientes que ya no están
+    @Inject
+    @ConfigProperty(name = "productos.eventos.latidoSegundos", defaultValue = "20")
+    private int latidoSegundos;
+
+    @Inject
+    @ConfigProperty(name = "productos.eventos.envioMaxSegundos", defaultValue = "10")
+    private int envioMaxSegundos;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Evento> historial = new ArrayDeque<>();
+    // Empieza en la hora de arranque para que los IDs sigan creciendo tras un reinicio
+    private long ultimoId = System.currentTimeMillis();
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger numeroHilo = new AtomicInteger();
+    // Latidos y plazos de envío; nunca escribe en la red
+    private ScheduledExecutorService planificador;
+    // Como mucho un envío en curso por suscriptor, así que no pasa de maxSuscriptores hilos
+    private ExecutorService envios;
+    private volatile Sse sse;
+
+    @PostConstruct
+    void iniciar() {
+        planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-productos-latido");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        envios = Executors.newCachedThreadPool(tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-productos-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleAtFixedRate(this::latido, latidoSegundos, latidoSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void detener() {
+        planificador.shutdownNow();
+        envios.shutdownNow();
+        suscriptores.forEach(Suscriptor::cerrar);
+    }
+
+    // Se ejecuta en el hilo de la escritura: solo encola, nunca escribe en la red
+    void alCambiar(@Observes CambioProducto cambio) {
+        try {
+            String datos = cambio.getTipo() == CambioProducto.Tipo.CREADO
+                    ? ProductoJson.texto(cambio.getProducto())
+                    : "{\"id\":" + cambio.getId() + "}";
+            synchronized (lock) {
+                Evento evento = new Evento(++ultimoId, cambio.getTipo().name().toLowerCase(Locale.ROOT), datos);
+                historial.addLast(evento);
+                if (historial.size() > tamanoHistorial) {
+                    historial.removeFirst();
+                }
+                if (!suscriptores.isEmpty()) {
+                    OutboundSseEvent salida = evento.construir(sse);
+                    suscriptores.forEach(suscriptor -> suscriptor.encolar(salida));
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "No se pudo publicar el cambio del producto " + cambio.getId(), e);
+        }
+    }
+
+    // Falso si ya se alcanzó el máximo de suscriptores. Sin Last-Event-ID el cliente recibe el
+    // ID actual; con uno conocido, lo que se perdió; si es demasiado antiguo, un aviso de recarga.
+    public boolean suscribir(SseEventSink sink, Sse sse, Long ultimoIdRecibido) {
+        this.sse = sse;
+        Suscriptor suscriptor = new Suscriptor(sink);
+        synchronized (lock) {
+            if (suscriptores.size() >= maxSuscriptores) {
+                return false;
+            }
+            // Registrado antes del primer envío: si ese envío falla, cerrar() ya lo encuentra y lo quita
+            suscriptores.add(suscriptor);
+            for (OutboundSseEvent evento : pendientesDesde(ultimoIdRecibido, sse)) {
+                suscriptor.encolar(evento);
+            }
+        }
+        return true;
+    }
+
+    public int suscriptores() {
+        return suscriptores.size();
+    }
+
+    // Se llama con el lock tomado
+    private List<OutboundSseEvent> pendientesDesde(Long ultimoIdRecibido, Sse sse) {
+        List<OutboundSseEvent> pendientes = new ArrayList<>();
+        if (ultimoIdRecibido == null) {
+            pendientes.add(new Evento(ultimoId, CONECTADO, "{}").construir(sse));
+            return pendientes;
+        }
+
+        long primero = historial.isEmpty() ? ultimoId + 1 : historial.getFirst().id;
+        long perdidos = ultimoId - ultimoIdRecibido;
+        if (ultimoIdRecibido < primero - 1 || perdidos < 0 || perdidos > bufferSuscriptor) {
+            pendientes.add(new Evento(ultimoId, RECARGAR, "{}").construir(sse));
+            return pendientes;
+        }
+        for (Evento evento : historial) {
+            if (evento.id > ultimoIdRecibido) {
+                pendientes.add(evento.construir(sse));
+            }
+        }
+        return pendientes;
+    }
+
+    private void latido() {
+        if (suscriptores.isEmpty() || sse == null) {
+            return;
+        }
+        OutboundSseEvent comentario = sse.newEventBuilder().comment("latido").build();
+        suscriptores.forEach(suscriptor -> suscriptor.encolar(comentario));
+    }
+
+    // Si la petición va a un método que abre un flujo SSE, según su @Produces y no según el Accept,
+    // que puede ser */*. Para los filtros que no deben retener ni contar estas respuestas.
+    static boolean esSuscripcion(ResourceInfo recurso) {
+        Method metodo = recurso != null ? recurso.getResourceMethod() : null;
+        if (metodo == null) {
+            return false;
+        }
+        Produces produces = metodo.getAnnotation(Produces.class);
+        if (produces == null) {
+            produces = metodo.getDeclaringClass().getAnnotation(Produces.class);
+        }
+        if (produces == null) {
+            return false;
+        }
+        for (String valor : produces.value()) {
+            for (String tipo : valor.split(",")) {
+                if (tipo.trim().toLowerCase(Locale.ROOT).startsWith(MediaType.SERVER_SENT_EVENTS)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Evento {
+        private final long id;
+        private final String nombre;
+        private final String datos;
+
+        private Evento(long id, String nombre, String datos) {
+            this.id = id;
+            this.nombre = nombre;
+            this.datos = datos;
+        }
+
+        private OutboundSseEvent construir(Sse sse) {
+            return sse.newEventBuilder()
+                    .id(Long.toString(id))
+                    .name(nombre)
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(String.class, datos)
+                    .build();
+        }
+    }
+
+    private final class Suscriptor {
+        private final SseEventSink sink;
+        private final BlockingQueue<OutboundSseEvent> cola;
+        // Como mucho un envío en curso por conexión; el siguiente sale cuando termina el anterior
+        private final AtomicBoolean enviando = new AtomicBoolean();
+
+        private Suscriptor(SseEventSink sink) {
+            this.sink = sink;
+            this.cola = new ArrayBlockingQueue<>(bufferSuscriptor);
+        }
+
+        private void encolar(OutboundSseEvent evento) {
+            if (!cola.offer(evento)) {
+                LOGGER.fine("Suscriptor de eventos desconectado por no consumir a tiempo");
+                cerrar();
+                return;
+            }
+            if (enviando.compareAndSet(false, true)) {
+                envios.execute(this::enviarSiguiente);
+            }
+        }
+
+        private void enviarSiguiente() {
+            OutboundSseEvent evento = cola.poll();
+            if (evento == null) {
+                enviando.set(false);
+                // Un evento encolado justo antes de soltar la marca no puede quedarse sin enviar
+                if (!cola.isEmpty() && enviando.compareAndSet(false, true)) {
+                    envios.execute(this::enviarSiguiente);
+                }
+                return;
+            }
+            if (sink.isClosed()) {
+                cerrar();
+                return;
+            }
+            // Cerrar la conexión desbloquea un envío que no avanza
+            ScheduledFuture<?> plazo = planificador.schedule(() -> {
+                LOGGER.fine("Suscriptor de eventos desconectado por superar " + envioMaxSegundos + " s en un envío");
+                cerrar();
+            }, envioMaxSegundos, TimeUnit.SECONDS);
+            CompletionStage<?> envio;
+            try {
+                envio = sink.send(evento);
+            } catch (RuntimeException e) {
+                plazo.cancel(false);
+                cerrar();
+                return;
+            }
+            envio.whenComplete((resultado, error) -> {
+                plazo.cancel(false);
+                if (error != null || !suscriptores.contains(this)) {
+                    cerrar();
+                } else {
+                    envios.execute(this::enviarSiguiente);
+                }
+            });
+        }
+
+        private void cerrar() {
+            if (suscriptores.remove(this)) {
+                cola.clear();
+                try {
+                    sink.close();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Error al cerrar la conexión de eventos", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.microprofile.rest;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+// Convierte en respuesta cualquier excepción que llegue sin mapear. Sin esto el contenedor la
+// gestiona fuera de JAX-RS, los filtros de respuesta no se ejecutan y ControlAdmision no
+// devolvería el hueco de la petición. Las WebApplicationException conservan su respuesta.
+@Provider
+public class ErroresNoControlados implements ExceptionMapper<Throwable> {
+
+    private static final Logger LOGGER = Logger.getLogger(ErroresNoControlados.class.getName());
+
+    @Override
+    public Response toResponse(Throwable exception) {
+        if (exception instanceof WebApplicationException) {
+            return ((WebApplicationException) exception).getResponse();
+        }
+        LOGGER.log(Level.SEVERE, "Error no controlado: " + exception.getMessage(), exception);
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .type(MediaType.TEXT_PLAIN_TYPE.withCharset("UTF-8"))
+                .entity("Error interno del servidor")
+                .build();
+    }
+}
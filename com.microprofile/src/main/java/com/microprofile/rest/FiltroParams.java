@@ -0,0 +1,136 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.FiltroProductos;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+
+// Parámetros de filtrado y orden de GET /productos. Se reciben como texto para responder 400
+// (y no 404, como haría JAX-RS) cuando un valor no se puede convertir.
+public class FiltroParams {
+
+    @QueryParam("minPrice")
+    @Parameter(description = "Precio mínimo (inclusive)")
+    private String minPrice;
+
+    @QueryParam("maxPrice")
+    @Parameter(description = "Precio máximo (inclusive)")
+    private String maxPrice;
+
+    @QueryParam("minQuantity")
+    @Parameter(description = "Cantidad mínima en stock (inclusive)")
+    private String minQuantity;
+
+    @QueryParam("maxQuantity")
+    @Parameter(description = "Cantidad máxima en stock (inclusive), p. ej. para stock bajo")
+    private String maxQuantity;
+
+    @QueryParam("namePrefix")
+    @Parameter(description = "El nombre empieza por este texto")
+    private String namePrefix;
+
+    @QueryParam("nameContains")
+    @Parameter(description = "El nombre contiene este texto")
+    private String nameContains;
+
+    @QueryParam("createdFrom")
+    @Parameter(description = "Creado desde esta fecha (yyyy-MM-dd o yyyy-MM-ddTHH:mm:ss)")
+    private String createdFrom;
+
+    @QueryParam("createdTo")
+    @Parameter(description = "Creado hasta esta fecha inclusive (yyyy-MM-dd o yyyy-MM-ddTHH:mm:ss)")
+    private String createdTo;
+
+    @QueryParam("sort")
+    @Parameter(description = "Propiedad de orden: id, nombre, precio, cantidad o fechaCreacion; con '-' delante es descendente")
+    private String sort;
+
+    public boolean vacio() {
+        return minPrice == null && maxPrice == null && minQuantity == null && maxQuantity == null
+                && namePrefix == null && nameContains == null && createdFrom == null && createdTo == null && sort == null;
+    }
+
+    public FiltroProductos aFiltro() {
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setPrecioMinimo(decimal("minPrice", minPrice));
+        filtro.setPrecioMaximo(decimal("maxPrice", maxPrice));
+        filtro.setCantidadMinima(entero("minQuantity", minQuantity));
+        filtro.setCantidadMaxima(entero("maxQuantity", maxQuantity));
+        filtro.setPrefijoNombre(texto(namePrefix));
+        filtro.setNombreContiene(texto(nameContains));
+        filtro.setCreadoDesde(fecha("createdFrom", createdFrom, LocalTime.MIN));
+        filtro.setCreadoHasta(fecha("createdTo", createdTo, LocalTime.MAX));
+
+        if (sort != null && !sort.isBlank()) {
+            String propiedad = sort.trim();
+            if (propiedad.startsWith("-")) {
+                filtro.setDescendente(true);
+                propiedad = propiedad.substring(1);
+            }
+            filtro.setOrden(orden(propiedad));
+        }
+        return filtro;
+    }
+
+    private static FiltroProductos.Orden orden(String propiedad) {
+        switch (propiedad) {
+            case "id":
+                return FiltroProductos.Orden.ID;
+            case "nombre":
+                return FiltroProductos.Orden.NOMBRE;
+            case "precio":
+                return FiltroProductos.Orden.PRECIO;
+            case "cantidad":
+                return FiltroProductos.Orden.CANTIDAD;
+            case "fechaCreacion":
+                return FiltroProductos.Orden.FECHA_CREACION;
+            default:
+                throw invalido("sort", propiedad);
+        }
+    }
+
+    private static BigDecimal decimal(String nombre, String valor) {
+        try {
+            return valor != null ? new BigDecimal(valor.trim()) : null;
+        } catch (NumberFormatException e) {
+            throw invalido(nombre, valor);
+        }
+    }
+
+    private static Integer entero(String nombre, String valor) {
+        try {
+            return valor != null ? Integer.valueOf(valor.trim()) : null;
+        } catch (NumberFormatException e) {
+            throw invalido(nombre, valor);
+        }
+    }
+
+    private static String texto(String valor) {
+        return valor != null && !valor.isEmpty() ? valor : null;
+    }
+
+    // Una fecha sin hora abarca el día completo
+    private static LocalDateTime fecha(String nombre, String valor, LocalTime horaPorDefecto) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            String fecha = valor.trim();
+            return fecha.length() == 10 ? LocalDate.parse(fecha).atTime(horaPorDefecto) : LocalDateTime.parse(fecha);
+        } catch (DateTimeParseException e) {
+            throw invalido(nombre, valor);
+        }
+    }
+
+    private static WebApplicationException invalido(String nombre, String valor) {
+        return new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                .entity("Valor inválido para el parámetro " + nombre + ": " + valor)
+                .build());
+    }
+}
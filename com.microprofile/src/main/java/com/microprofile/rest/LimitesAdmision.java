@@ -0,0 +1,181 @@
+package com.microprofile.rest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+
+// Límites de peticiones en curso para lecturas y escrituras que se adaptan a la latencia (AIMD):
+// cada respuesta dentro del objetivo y con el límite en uso lo sube en 1/límite (uno por ventana
+// completa); una respuesta lenta o un 5xx lo multiplica por factorReduccion, como mucho una vez
+// por intervalo objetivo para que un mismo atasco no lo hunda. Mientras la clase prioritaria está
+// rechazando peticiones, la otra solo admite la mitad de su límite.
+@ApplicationScoped
+public class LimitesAdmision {
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.habilitada", defaultValue = "true")
+    private boolean habilitada;
+
+    // escrituras o lecturas
+    @Inject
+    @ConfigProperty(name = "productos.admision.prioridad", defaultValue = "escrituras")
+    private String prioridad;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.factorReduccion", defaultValue = "0.9")
+    private double factorReduccion;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.lecturas.inicial", defaultValue = "64")
+    private int lecturasInicial;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.lecturas.minimo", defaultValue = "4")
+    private int lecturasMinimo;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.lecturas.maximo", defaultValue = "512")
+    private int lecturasMaximo;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.lecturas.latenciaObjetivoMs", defaultValue = "500")
+    private long lecturasObjetivoMs;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.escrituras.inicial", defaultValue = "16")
+    private int escriturasInicial;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.escrituras.minimo", defaultValue = "2")
+    private int escriturasMinimo;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.escrituras.maximo", defaultValue = "128")
+    private int escriturasMaximo;
+
+    @Inject
+    @ConfigProperty(name = "productos.admision.escrituras.latenciaObjetivoMs", defaultValue = "1000")
+    private long escriturasObjetivoMs;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Limite lecturas;
+    private Limite escrituras;
+
+    @PostConstruct
+    void inicializar() {
+        lecturas = new Limite(lecturasInicial, lecturasMinimo, lecturasMaximo, lecturasObjetivoMs, factorReduccion);
+        escrituras = new Limite(escriturasInicial, escriturasMinimo, escriturasMaximo, escriturasObjetivoMs, factorReduccion);
+        registrarMetricas("lecturas", lecturas);
+        registrarMetricas("escrituras", escrituras);
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    // Null si la petición no se admite
+    Limite adquirir(boolean escritura) {
+        Limite limite = escritura ? escrituras : lecturas;
+        Limite prioritario = "lecturas".equalsIgnoreCase(prioridad) ? lecturas : escrituras;
+        boolean reducido = limite != prioritario && prioritario.rechazandoDesde(System.nanoTime());
+        return limite.entrar(reducido) ? limite : null;
+    }
+
+    private void registrarMetricas(String clase, Limite limite) {
+        Tag tag = new Tag("clase", clase);
+        metricRegistry.gauge(metadata("productos.admision.limite", "Peticiones en curso admitidas",
+                MetricType.GAUGE), limite::getLimite, tag);
+        metricRegistry.gauge(metadata("productos.admision.enCurso", "Peticiones en curso",
+                MetricType.GAUGE), limite::getEnCurso, tag);
+        limite.rechazos = metricRegistry.counter(metadata("productos.admision.rechazos",
+                "Peticiones rechazadas por superar el límite", MetricType.COUNTER), tag);
+    }
+
+    private static Metadata metadata(String nombre, String descripcion, MetricType tipo) {
+        return Metadata.builder()
+                .withName(nombre)
+                .withDescription(descripcion)
+                .withType(tipo)
+                .build();
+    }
+
+    static final class Limite {
+        private final int minimo;
+        private final int maximo;
+        private final long objetivoNanos;
+        private final double factorReduccion;
+        private final AtomicInteger enCurso = new AtomicInteger();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile double limite;
+        private volatile long ultimoRechazo;
+        private long ultimaReduccion;
+        private Counter rechazos;
+
+        Limite(int inicial, int minimo, int maximo, long objetivoMs, double factorReduccion) {
+            this.minimo = Math.max(1, minimo);
+            this.maximo = Math.max(this.minimo, maximo);
+            this.objetivoNanos = TimeUnit.MILLISECONDS.toNanos(objetivoMs);
+            this.factorReduccion = factorReduccion;
+            this.limite = Math.min(this.maximo, Math.max(this.minimo, inicial));
+            this.ultimaReduccion = System.nanoTime() - objetivoNanos;
+            this.ultimoRechazo = ultimaReduccion - objetivoNanos;
+        }
+
+        int getLimite() {
+            return (int) limite;
+        }
+
+        int getEnCurso() {
+            return enCurso.get();
+        }
+
+        private boolean rechazandoDesde(long ahora) {
+            return ahora - ultimoRechazo < objetivoNanos;
+        }
+
+        private boolean entrar(boolean reducido) {
+            int permitidas = Math.max(1, reducido ? (int) limite / 2 : (int) limite);
+            while (true) {
+                int actuales = enCurso.get();
+                if (actuales >= permitidas) {
+                    ultimoRechazo = System.nanoTime();
+                    rechazos.inc();
+                    return false;
+                }
+                if (enCurso.compareAndSet(actuales, actuales + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void salir(long duracionNanos, boolean sobrecarga) {
+            int enCursoAlSalir = enCurso.getAndDecrement();
+            lock.lock();
+            try {
+                if (sobrecarga || duracionNanos > objetivoNanos) {
+                    long ahora = System.nanoTime();
+                    if (ahora - ultimaReduccion >= objetivoNanos) {
+                        limite = Math.max(minimo, limite * factorReduccion);
+                        ultimaReduccion = ahora;
+                    }
+                } else if (enCursoAlSalir * 2 >= limite) {
+                    // Solo crece si se está usando; en reposo no se acumula margen sin medir
+                    limite = Math.min(maximo, limite + 1 / limite);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.util.EscritorCbor;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
+
+// Representación CBOR de Producto: un mapa con claves enteras en lugar de nombres de propiedad
+// (0 id, 1 nombre, 2 descripcion, 3 precio, 4 cantidad, 5 fechaCreacion), el precio como fracción
+// decimal exacta y la fecha con el mismo formato que en JSON. Al leer se aceptan también los
+// nombres de propiedad como clave.
+final class ProductoCbor {
+
+    static final String APPLICATION_CBOR = "application/cbor";
+    static final MediaType APPLICATION_CBOR_TYPE = new MediaType("application", "cbor");
+
+    private static final int ID = 0;
+    private static final int NOMBRE = 1;
+    private static final int DESCRIPCION = 2;
+    private static final int PRECIO = 3;
+    private static final int CANTIDAD = 4;
+    private static final int FECHA_CREACION = 5;
+    private static final String[] PROPIEDADES = {"id", "nombre", "descripcion", "precio", "cantidad", "fechaCreacion"};
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private ProductoCbor() {
+    }
+
+    // Solo las propiedades de la proyección; id siempre. Los nulos se omiten, como en JSON.
+    static void escribir(EscritorCbor escritor, Producto producto, Proyeccion proyeccion) throws IOException {
+        boolean nombre = proyeccion.incluye(Proyeccion.NOMBRE) && producto.getNombre() != null;
+        boolean descripcion = proyeccion.incluye(Proyeccion.DESCRIPCION) && producto.getDescripcion() != null;
+        boolean precio = proyeccion.incluye(Proyeccion.PRECIO) && producto.getPrecio() != null;
+        boolean cantidad = proyeccion.incluye(Proyeccion.CANTIDAD);
+        boolean fecha = proyeccion.incluye(Proyeccion.FECHA_CREACION) && producto.getFechaCreacion() != null;
+        int entradas = 1 + (nombre ? 1 : 0) + (descripcion ? 1 : 0) + (precio ? 1 : 0) + (cantidad ? 1 : 0) + (fecha ? 1 : 0);
+
+        escritor.inicioMapa(entradas);
+        escritor.entero(ID).entero(producto.getId());
+        if (nombre) {
+            escritor.entero(NOMBRE).texto(producto.getNombre());
+        }
+        if (descripcion) {
+            escritor.entero(DESCRIPCION).texto(producto.getDescripcion());
+        }
+        if (precio) {
+            escritor.entero(PRECIO).decimal(producto.getPrecio());
+        }
+        if (cantidad) {
+            escritor.entero(CANTIDAD).entero(producto.getCantidad());
+        }
+        if (fecha) {
+            escritor.entero(FECHA_CREACION).texto(FORMATO_FECHA.format(producto.getFechaCreacion()));
+        }
+    }
+
+    static StreamingOutput objeto(Producto producto, Proyeccion proyeccion) {
+        return salida -> {
+            EscritorCbor escritor = new EscritorCbor(salida);
+            escribir(escritor, producto, proyeccion);
+            escritor.flush();
+        };
+    }
+
+    static StreamingOutput lista(List<Producto> productos, Proyeccion proyeccion) {
+        return salida -> {
+            EscritorCbor escritor = new EscritorCbor(salida);
+            escritor.inicioLista(productos.size());
+            for (Producto producto : productos) {
+                escribir(escritor, producto, proyeccion);
+            }
+            escritor.flush();
+        };
+    }
+
+    // Valor ya decodificado por LectorCbor
+    static Producto leer(Object valor) throws IOException {
+        if (!(valor instanceof Map)) {
+            throw new IOException("Se esperaba un mapa con las propiedades del producto");
+        }
+        Producto producto = new Producto();
+        for (Map.Entry<?, ?> entrada : ((Map<?, ?>) valor).entrySet()) {
+            Object dato = entrada.getValue();
+            switch (clave(entrada.getKey())) {
+                case ID:
+                    producto.setId(entero(dato));
+                    break;
+                case NOMBRE:
+                    producto.setNombre(texto(dato));
+                    break;
+                case DESCRIPCION:
+                    producto.setDescripcion(texto(dato));
+                    break;
+                case PRECIO:
+                    producto.setPrecio(decimal(dato));
+                    break;
+                case CANTIDAD:
+                    producto.setCantidad(entero(dato));
+                    break;
+                case FECHA_CREACION:
+                    producto.setFechaCreacion(fecha(dato));
+                    break;
+                default:
+                    // Propiedades desconocidas se ignoran, como hace JSON-B
+                    break;
+            }
+        }
+        return producto;
+    }
+
+    static List<Producto> leerLista(Object valor) throws IOException {
+        if (!(valor instanceof List)) {
+            throw new IOException("Se esperaba una lista de productos");
+        }
+        List<Producto> productos = new ArrayList<>();
+        for (Object elemento : (List<?>) valor) {
+            productos.add(leer(elemento));
+        }
+        return productos;
+    }
+
+    private static int clave(Object clave) {
+        if (clave instanceof Long) {
+            long numero = (Long) clave;
+            return numero >= 0 && numero < PROPIEDADES.length ? (int) numero : -1;
+        }
+        for (int i = 0; i < PROPIEDADES.length; i++) {
+            if (PROPIEDADES[i].equals(clave)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int entero(Object dato) throws IOException {
+        if (dato instanceof Long && (Long) dato >= Integer.MIN_VALUE && (Long) dato <= Integer.MAX_VALUE) {
+            return (int) (long) (Long) dato;
+        }
+        throw new IOException("Se esperaba un entero: " + dato);
+    }
+
+    private static String texto(Object dato) throws IOException {
+        if (dato == null || dato instanceof String) {
+            return (String) dato;
+        }
+        throw new IOException("Se esperaba un texto: " + dato);
+    }
+
+    private static BigDecimal decimal(Object dato) throws IOException {
+        if (dato == null || dato instanceof BigDecimal) {
+            return (BigDecimal) dato;
+        }
+        if (dato instanceof Long) {
+            return BigDecimal.valueOf((Long) dato);
+        }
+        if (dato instanceof BigInteger) {
+            return new BigDecimal((BigInteger) dato);
+        }
+        if (dato instanceof Double && Double.isFinite((Double) dato)) {
+            return BigDecimal.valueOf((Double) dato);
+        }
+        throw new IOException("Se esperaba un número: " + dato);
+    }
+
+    private static LocalDateTime fecha(Object dato) throws IOException {
+        if (dato == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(texto(dato));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Fecha inválida: " + dato, e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.util.EscritorCbor;
+import com.microprofile.util.LectorCbor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+// application/cbor para Producto, listas de productos y listas de IDs (DELETE /batch).
+// También escribe textos, para que los mensajes de error lleguen a quien solo acepta CBOR.
+@Provider
+@Produces(ProductoCbor.APPLICATION_CBOR)
+@Consumes(ProductoCbor.APPLICATION_CBOR)
+public class ProductoCborProvider implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Producto.class.isAssignableFrom(type) || type == String.class
+                || (Collection.class.isAssignableFrom(type) && elemento(genericType) == Producto.class);
+    }
+
+    @Override
+    public void writeTo(Object entidad, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        EscritorCbor escritor = new EscritorCbor(entityStream);
+        if (entidad instanceof String) {
+            escritor.texto((String) entidad);
+        } else if (entidad instanceof Producto) {
+            ProductoCbor.escribir(escritor, (Producto) entidad, Proyeccion.TODOS);
+        } else {
+            Collection<?> productos = (Collection<?>) entidad;
+            escritor.inicioLista(productos.size());
+            for (Object producto : productos) {
+                ProductoCbor.escribir(escritor, (Producto) producto, Proyeccion.TODOS);
+            }
+        }
+        escritor.flush();
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (type == Producto.class) {
+            return true;
+        }
+        Type elemento = elemento(genericType);
+        return List.class.isAssignableFrom(type) && (elemento == Producto.class || elemento == Integer.class);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        try {
+            Object valor = new LectorCbor(entityStream).leer();
+            if (Producto.class.equals(type)) {
+                return ProductoCbor.leer(valor);
+            }
+            if (elemento(genericType) == Producto.class) {
+                return ProductoCbor.leerLista(valor);
+            }
+            if (!(valor instanceof List)) {
+                throw new IOException("Se esperaba una lista de IDs");
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (Object id : (List<?>) valor) {
+                ids.add(ProductoCbor.entero(id));
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new BadRequestException("Cuerpo CBOR inválido: " + e.getMessage(), e);
+        }
+    }
+
+    private static Type elemento(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] argumentos = ((ParameterizedType) genericType).getActualTypeArguments();
+            return argumentos.length == 1 ? argumentos[0] : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.FilaInvalidaException;
+import com.microprofile.data.FuenteProductos;
+import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.util.EscritorCsv;
+import com.microprofile.util.LectorCsv;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+// Representación CSV de Producto: cabecera con los nombres de propiedad de JSON y una fila por
+// producto, con el precio sin notación científica y la fecha con el mismo formato que en JSON.
+// Al importar, las columnas se localizan por la cabecera en cualquier orden y las desconocidas se
+// ignoran; fechaCreacion no se importa porque la asigna la base de datos. El texto que una hoja de
+// cálculo tomaría por fórmula (empieza por =, +, -, @, tabulador o retorno de carro) se exporta con
+// un apóstrofo delante, que la importación quita.
+final class ProductoCsv {
+
+    static final String TEXT_CSV = "text/csv";
+
+    private static final int ID = 0;
+    private static final int NOMBRE = 1;
+    private static final int DESCRIPCION = 2;
+    private static final int PRECIO = 3;
+    private static final int CANTIDAD = 4;
+    private static final String[] PROPIEDADES = {"id", "nombre", "descripcion", "precio", "cantidad", "fechaCreacion"};
+    private static final int[] CAMPOS = {0, Proyeccion.NOMBRE, Proyeccion.DESCRIPCION, Proyeccion.PRECIO,
+            Proyeccion.CANTIDAD, Proyeccion.FECHA_CREACION};
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private ProductoCsv() {
+    }
+
+    static void cabecera(EscritorCsv escritor, Proyeccion proyeccion) throws IOException {
+        for (int i = 0; i < PROPIEDADES.length; i++) {
+            if (i == ID || proyeccion.incluye(CAMPOS[i])) {
+                escritor.campo(PROPIEDADES[i]);
+            }
+        }
+        escritor.finFila();
+    }
+
+    // Las mismas columnas que la cabecera de la proyección
+    static void escribir(EscritorCsv escritor, Producto producto, Proyeccion proyeccion) throws IOException {
+        escritor.campo(producto.getId());
+        if (proyeccion.incluye(Proyeccion.NOMBRE)) {
+            escritor.campo(protegerFormula(producto.getNombre()));
+        }
+        if (proyeccion.incluye(Proyeccion.DESCRIPCION)) {
+            escritor.campo(protegerFormula(producto.getDescripcion()));
+        }
+        if (proyeccion.incluye(Proyeccion.PRECIO)) {
+            escritor.campo(producto.getPrecio() != null ? producto.getPrecio().toPlainString() : null);
+        }
+        if (proyeccion.incluye(Proyeccion.CANTIDAD)) {
+            escritor.campo(producto.getCantidad());
+        }
+        if (proyeccion.incluye(Proyeccion.FECHA_CREACION)) {
+            escritor.campo(producto.getFechaCreacion() != null ? FORMATO_FECHA.format(producto.getFechaCreacion()) : null);
+        }
+        escritor.finFila();
+    }
+
+    // Lee la cabecera y devuelve los productos de las filas siguientes
+    static FuenteProductos fuente(LectorCsv lector) throws IOException {
+        int[] columnas = new int[PROPIEDADES.length];
+        Arrays.fill(columnas, -1);
+        List<String> cabecera = lector.leerFila();
+        if (cabecera == null) {
+            return new FuenteCsv(lector, columnas);
+        }
+        for (int j = 0; j < cabecera.size(); j++) {
+            String nombre = cabecera.get(j) != null ? cabecera.get(j).trim() : "";
+            for (int i = 0; i < PROPIEDADES.length; i++) {
+                if (PROPIEDADES[i].equalsIgnoreCase(nombre)) {
+                    if (columnas[i] >= 0) {
+                        throw new IOException("Columna repetida en la cabecera: " + nombre);
+                    }
+                    columnas[i] = j;
+                }
+            }
+        }
+        if (columnas[NOMBRE] < 0) {
+            throw new IOException("La cabecera debe incluir la columna nombre");
+        }
+        return new FuenteCsv(lector, columnas);
+    }
+
+    private static Producto leer(List<String> fila, int[] columnas) throws FilaInvalidaException {
+        Producto producto = new Producto();
+        String id = valor(fila, columnas[ID]);
+        if (id != null) {
+            producto.setId(entero(id, "id"));
+        }
+        producto.setNombre(quitarProteccion(valor(fila, columnas[NOMBRE])));
+        producto.setDescripcion(quitarProteccion(valor(fila, columnas[DESCRIPCION])));
+        String precio = valor(fila, columnas[PRECIO]);
+        if (precio != null) {
+            try {
+                producto.setPrecio(new BigDecimal(precio.trim()));
+            } catch (NumberFormatException e) {
+                throw new FilaInvalidaException("Precio inválido: " + precio);
+            }
+        }
+        String cantidad = valor(fila, columnas[CANTIDAD]);
+        if (cantidad != null) {
+            producto.setCantidad(entero(cantidad, "cantidad"));
+        }
+        return producto;
+    }
+
+    // También lleva apóstrofo el texto que ya empieza por apóstrofos seguidos de fórmula, para que
+    // quitarProteccion lo devuelva tal cual
+    private static String protegerFormula(String texto) {
+        return texto != null && empiezaPorFormula(texto) ? "'" + texto : texto;
+    }
+
+    private static String quitarProteccion(String texto) {
+        return texto != null && texto.startsWith("'") && empiezaPorFormula(texto) ? texto.substring(1) : texto;
+    }
+
+    private static boolean empiezaPorFormula(String texto) {
+        int i = 0;
+        while (i < texto.length() && texto.charAt(i) == '\'') {
+            i++;
+        }
+        return i < texto.length() && "=+-@\t\r".indexOf(texto.charAt(i)) >= 0;
+    }
+
+    // Las filas cortas dejan a null las columnas que faltan
+    private static String valor(List<String> fila, int columna) {
+        return columna >= 0 && columna < fila.size() ? fila.get(columna) : null;
+    }
+
+    private static int entero(String texto, String propiedad) throws FilaInvalidaException {
+        try {
+            return Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            throw new FilaInvalidaException("Valor de " + propiedad + " inválido: " + texto);
+        }
+    }
+
+    private static final class FuenteCsv implements FuenteProductos {
+        private final LectorCsv lector;
+        private final int[] columnas;
+
+        private FuenteCsv(LectorCsv lector, int[] columnas) {
+            this.lector = lector;
+            this.columnas = columnas;
+        }
+
+        @Override
+        public Producto siguiente() throws IOException {
+            List<String> fila = lector.leerFila();
+            return fila != null ? leer(fila, columnas) : null;
+        }
+
+        @Override
+        public int linea() {
+            return lector.linea();
+        }
+    }
+}
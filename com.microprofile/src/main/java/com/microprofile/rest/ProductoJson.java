@@ -0,0 +1,258 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.FilaInvalidaException;
+import com.microprofile.data.FuenteProductos;
+import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonReaderFactory;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+import jakarta.ws.rs.core.StreamingOutput;
+
+// Serialización de Producto con JSON-P, con la misma forma que produce JSON-B
+// (propiedades en orden alfabético y valores nulos omitidos), y lectura de NDJSON para importar
+final class ProductoJson {
+
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final JsonGeneratorFactory GENERADORES = Json.createGeneratorFactory(Collections.emptyMap());
+    private static final JsonReaderFactory LECTORES = Json.createReaderFactory(Collections.emptyMap());
+    private static final int MAXIMO_LINEA = 1 << 20;
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private ProductoJson() {
+    }
+
+    static JsonGenerator crearGenerador(OutputStream salida) {
+        return GENERADORES.createGenerator(salida, StandardCharsets.UTF_8);
+    }
+
+    static void escribir(JsonGenerator generador, Producto producto) {
+        escribir(generador, producto, Proyeccion.TODOS);
+    }
+
+    // Solo las propiedades de la proyección; id siempre
+    static void escribir(JsonGenerator generador, Producto producto, Proyeccion proyeccion) {
+        generador.writeStartObject();
+        if (proyeccion.incluye(Proyeccion.CANTIDAD)) {
+            generador.write("cantidad", producto.getCantidad());
+        }
+        if (proyeccion.incluye(Proyeccion.DESCRIPCION) && producto.getDescripcion() != null) {
+            generador.write("descripcion", producto.getDescripcion());
+        }
+        if (proyeccion.incluye(Proyeccion.FECHA_CREACION) && producto.getFechaCreacion() != null) {
+            generador.write("fechaCreacion", FORMATO_FECHA.format(producto.getFechaCreacion()));
+        }
+        generador.write("id", producto.getId());
+        if (proyeccion.incluye(Proyeccion.NOMBRE) && producto.getNombre() != null) {
+            generador.write("nombre", producto.getNombre());
+        }
+        if (proyeccion.incluye(Proyeccion.PRECIO) && producto.getPrecio() != null) {
+            generador.write("precio", producto.getPrecio());
+        }
+        generador.writeEnd();
+    }
+
+    static String texto(Producto producto) {
+        StringWriter texto = new StringWriter();
+        try (JsonGenerator generador = GENERADORES.createGenerator(texto)) {
+            escribir(generador, producto);
+        }
+        return texto.toString();
+    }
+
+    static StreamingOutput objeto(Producto producto, Proyeccion proyeccion) {
+        return salida -> {
+            try (JsonGenerator generador = crearGenerador(salida)) {
+                escribir(generador, producto, proyeccion);
+            }
+        };
+    }
+
+    static StreamingOutput lista(List<Producto> productos, Proyeccion proyeccion) {
+        return salida -> {
+            try (JsonGenerator generador = crearGenerador(salida)) {
+                generador.writeStartArray();
+                for (Producto producto : productos) {
+                    escribir(generador, producto, proyeccion);
+                }
+                generador.writeEnd();
+            }
+        };
+    }
+
+    // Un objeto por línea (NDJSON); la salida queda abierta para la línea siguiente
+    static void escribirLinea(Writer salida, Producto producto, Proyeccion proyeccion) throws IOException {
+        try (JsonGenerator generador = GENERADORES.createGenerator(new SinCierre(salida))) {
+            escribir(generador, producto, proyeccion);
+        }
+        salida.write('\n');
+    }
+
+    // Productos de un cuerpo NDJSON; las líneas vacías se saltan
+    static FuenteProductos fuente(Reader entrada) {
+        return new FuenteNdjson(entrada);
+    }
+
+    // Mismas propiedades que escribe escribir(); las desconocidas y fechaCreacion se ignoran
+    private static Producto leer(JsonObject objeto) throws FilaInvalidaException {
+        Producto producto = new Producto();
+        Integer id = entero(objeto, "id");
+        if (id != null) {
+            producto.setId(id);
+        }
+        producto.setNombre(texto(objeto, "nombre"));
+        producto.setDescripcion(texto(objeto, "descripcion"));
+        JsonValue precio = objeto.get("precio");
+        if (precio instanceof JsonNumber) {
+            producto.setPrecio(((JsonNumber) precio).bigDecimalValue());
+        } else if (precio instanceof JsonString) {
+            try {
+                producto.setPrecio(new BigDecimal(((JsonString) precio).getString().trim()));
+            } catch (NumberFormatException e) {
+                throw new FilaInvalidaException("Precio inválido: " + precio);
+            }
+        } else if (precio != null && precio != JsonValue.NULL) {
+            throw new FilaInvalidaException("Precio inválido: " + precio);
+        }
+        Integer cantidad = entero(objeto, "cantidad");
+        if (cantidad != null) {
+            producto.setCantidad(cantidad);
+        }
+        return producto;
+    }
+
+    private static String texto(JsonObject objeto, String propiedad) throws FilaInvalidaException {
+        JsonValue valor = objeto.get(propiedad);
+        if (valor == null || valor == JsonValue.NULL) {
+            return null;
+        }
+        if (valor instanceof JsonString) {
+            return ((JsonString) valor).getString();
+        }
+        throw new FilaInvalidaException("Se esperaba un texto en " + propiedad + ": " + valor);
+    }
+
+    private static Integer entero(JsonObject objeto, String propiedad) throws FilaInvalidaException {
+        JsonValue valor = objeto.get(propiedad);
+        if (valor == null || valor == JsonValue.NULL) {
+            return null;
+        }
+        try {
+            if (valor instanceof JsonNumber) {
+                return ((JsonNumber) valor).intValueExact();
+            }
+        } catch (ArithmeticException e) {
+            // Con decimales o fuera de rango: se informa igual que un tipo incorrecto
+        }
+        throw new FilaInvalidaException("Se esperaba un entero en " + propiedad + ": " + valor);
+    }
+
+    // Cerrar el generador no debe cerrar la respuesta
+    private static final class SinCierre extends FilterWriter {
+        private SinCierre(Writer salida) {
+            super(salida);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // Lee por bloques y corta cada línea en MAXIMO_LINEA caracteres: una línea más larga es una
+    // fila inválida, pero la lectura sigue en la siguiente
+    private static final class FuenteNdjson implements FuenteProductos {
+        private final Reader entrada;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder linea = new StringBuilder();
+        private int posicion;
+        private int limite;
+        private int numeroLinea;
+        private boolean demasiadoLarga;
+
+        private FuenteNdjson(Reader entrada) {
+            this.entrada = entrada;
+        }
+
+        @Override
+        public Producto siguiente() throws IOException {
+            while (leerLinea()) {
+                if (demasiadoLarga) {
+                    throw new FilaInvalidaException("Línea de más de " + MAXIMO_LINEA + " caracteres");
+                }
+                if (numeroLinea == 1 && linea.length() > 0 && linea.charAt(0) == '\uFEFF') {
+                    linea.deleteCharAt(0);
+                }
+                String json = linea.toString().strip();
+                if (json.isEmpty()) {
+                    continue;
+                }
+                try (JsonReader lector = LECTORES.createReader(new StringReader(json))) {
+                    JsonValue valor = lector.readValue();
+                    if (!(valor instanceof JsonObject)) {
+                        throw new FilaInvalidaException("Se esperaba un objeto JSON");
+                    }
+                    return leer((JsonObject) valor);
+                } catch (JsonException e) {
+                    throw new FilaInvalidaException("JSON inválido: " + e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int linea() {
+            return numeroLinea;
+        }
+
+        // False al terminar la entrada
+        private boolean leerLinea() throws IOException {
+            linea.setLength(0);
+            demasiadoLarga = false;
+            boolean leida = false;
+            while (true) {
+                if (posicion == limite) {
+                    limite = Math.max(entrada.read(buffer, 0, buffer.length), 0);
+                    posicion = 0;
+                    if (limite == 0) {
+                        if (leida) {
+                            numeroLinea++;
+                        }
+                        return leida;
+                    }
+                }
+                leida = true;
+                char c = buffer[posicion++];
+                if (c == '\n') {
+                    numeroLinea++;
+                    return true;
+                }
+                if (linea.length() < MAXIMO_LINEA) {
+                    linea.append(c);
+                } else {
+                    demasiadoLarga = true;
+                }
+            }
+        }
+    }
+}
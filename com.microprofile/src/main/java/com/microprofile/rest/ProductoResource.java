@@ -1,15 +1,71 @@
 package com.microprofile.rest;
 
+import com.microprofile.config.DatabaseExecutor;
+import com.microprofile.data.ConflictoVersionException;
+import com.microprofile.data.FiltroProductos;
+import com.microprofile.data.FuenteProductos;
+import com.microprofile.data.ProcesadorProducto;
 import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.data.ReglasProducto;
+import com.microprofile.data.StockInsuficienteException;
 import com.microprofile.service.ProductoService;
+import com.microprofile.service.ResultadoImportacion;
+import com.microprofile.service.VersionCatalogo;
+import com.microprofile.util.EscritorCbor;
+import com.microprofile.util.EscritorCsv;
+import com.microprofile.util.LectorCsv;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
@@ -17,76 +73,500 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 @Path("/productos")
 @RequestScoped
 @Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Consumes({MediaType.APPLICATION_JSON, ProductoCbor.APPLICATION_CBOR})
 @Tag(name = "API de Productos", description = "Operaciones CRUD para productos")
 public class ProductoResource {
 
     @Inject
     private ProductoService productoService;
 
+    @Inject
+    private DatabaseExecutor databaseExecutor;
+
+    @Inject
+    private VersionCatalogo versionCatalogo;
+
+    @Inject
+    private DifusorCambios difusorCambios;
+
+    @Inject
+    private RespuestasCodificadas respuestasCodificadas;
+
+    @Inject
+    @ConfigProperty(name = "productos.paginacion.limitePorDefecto", defaultValue = "50")
+    private int limitePorDefecto;
+
+    @Inject
+    @ConfigProperty(name = "productos.paginacion.limiteMaximo", defaultValue = "1000")
+    private int limiteMaximo;
+
+    // Los validadores del listado salen de VersionCatalogo, que solo ve las escrituras de esta instancia:
+    // activar solo con una única instancia por la que pasen todas las escrituras
+    @Inject
+    @ConfigProperty(name = "productos.http.condicional.habilitado", defaultValue = "false")
+    private boolean condicionalHabilitado;
+
+    @Inject
+    @ConfigProperty(name = "productos.concurrenciaOptimista.habilitada", defaultValue = "false")
+    private boolean concurrenciaOptimista;
+
+    // El mismo que ControlAdmision para los 503 por saturación o tiempo agotado
+    @Inject
+    @ConfigProperty(name = "productos.admision.retryAfterSegundos", defaultValue = "1")
+    private int retryAfterSegundos;
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     @GET
-    @Operation(summary = "Listar todos los productos", description = "Retorna una lista con todos los productos disponibles")
+    @Produces({MediaType.APPLICATION_JSON, ProductoCbor.APPLICATION_CBOR})
+    @Operation(summary = "Listar productos", description = "Retorna los productos ordenados por ID. Sin parámetros se envían todos en streaming; "
+            + "con limit/after se pagina por cursor y el siguiente cursor se indica en la cabecera X-Next-Cursor. "
+            + "Admite filtros por precio, cantidad, nombre y fecha de creación y orden por sort; "
+            + "con sort, X-Next-Cursor es un cursor opaco válido solo para ese mismo orden. Con ids se obtienen esos productos en una sola consulta")
     @APIResponses({
             @APIResponse(responseCode = "200", description = "Lista de productos obtenida exitosamente"),
+            @APIResponse(responseCode = "304", description = "El catálogo no cambió desde la versión indicada en If-None-Match/If-Modified-Since"),
+            @APIResponse(responseCode = "400", description = "Parámetros de paginación inválidos"),
             @APIResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public Response listarProductos() {
+    public CompletionStage<Response> listarProductos(
+            @Parameter(description = "Máximo de productos por página") @QueryParam("limit") Integer limit,
+            @Parameter(description = "Cursor: X-Next-Cursor de la página anterior (al ordenar por id, el ID de su último producto)") @QueryParam("after") String after,
+            @Parameter(description = "Propiedades a incluir separadas por comas, p. ej. id,nombre,precio") @QueryParam("fields") String fields,
+            @Parameter(description = "IDs separados por comas; tiene prioridad sobre los demás parámetros") @QueryParam("ids") String ids,
+            @BeanParam FiltroParams filtroParams) {
+        // La versión se toma antes de leer: si hay una escritura en medio, la próxima validación fallará
+        long version = versionCatalogo.version();
+        EntityTag etiquetaCatalogo = new EntityTag(Long.toString(version));
+        Date ultimaModificacion = versionCatalogo.ultimaModificacion();
+        if (condicionalHabilitado) {
+            Response.ResponseBuilder noModificado = ultimaModificacion != null
+                    ? request.evaluatePreconditions(ultimaModificacion, etiquetaCatalogo)
+                    : request.evaluatePreconditions(etiquetaCatalogo);
+            if (noModificado != null) {
+                return CompletableFuture.completedFuture(conValidadores(noModificado, etiquetaCatalogo, ultimaModificacion).build());
+            }
+        }
+
+        Proyeccion proyeccion;
         try {
-            List<Producto> productos = productoService.listarProductos();
-            return Response.ok(productos).build();
-        } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al obtener los productos: " + e.getMessage())
-                    .build();
+            proyeccion = proyeccionDe(fields);
+        } catch (WebApplicationException e) {
+            return CompletableFuture.completedFuture(e.getResponse());
+        }
+        boolean cbor = prefiereCbor();
+
+        if (ids != null) {
+            List<Integer> listaIds;
+            try {
+                listaIds = idsDe(ids);
+            } catch (WebApplicationException e) {
+                return CompletableFuture.completedFuture(e.getResponse());
+            }
+            return asincrono(() -> {
+                try {
+                    List<Producto> productos = productoService.obtenerProductos(listaIds);
+                    return conValidadores(Response.ok(entidad(productos, proyeccion, cbor)), etiquetaCatalogo, ultimaModificacion).build();
+                } catch (SQLException e) {
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity("Error al obtener los productos: " + e.getMessage())
+                            .build();
+                }
+            });
         }
+
+        if (limit == null && after == null && filtroParams.vacio()) {
+            return CompletableFuture.completedFuture(
+                    conValidadores(Response.ok(streamingProductos(proyeccion, cbor)), etiquetaCatalogo, ultimaModificacion).build());
+        }
+
+        int limite = limit != null ? limit : limitePorDefecto;
+        if (limite < 1 || limite > limiteMaximo) {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("El parámetro limit debe estar entre 1 y " + limiteMaximo)
+                    .build());
+        }
+
+        FiltroProductos filtro;
+        try {
+            filtro = filtroParams.vacio() ? null : filtroParams.aFiltro();
+        } catch (WebApplicationException e) {
+            return CompletableFuture.completedFuture(e.getResponse());
+        }
+        Integer despuesDeId;
+        try {
+            despuesDeId = after != null ? CursorPagina.aplicar(after, filtro) : null;
+        } catch (WebApplicationException e) {
+            return CompletableFuture.completedFuture(e.getResponse());
+        }
+        // El cursor necesita el valor de orden aunque fields no lo pida; se serializa solo la proyección
+        Proyeccion consulta = filtro == null ? proyeccion
+                : Proyeccion.de(proyeccion.getMascara() | filtro.getOrden().getCampo());
+
+        // UriInfo solo es válido en el hilo de la petición
+        UriBuilder siguientePagina = uriInfo.getRequestUriBuilder();
+        int despues = despuesDeId != null ? despuesDeId : 0;
+        // Las páginas sin filtros se sirven ya serializadas mientras no cambie el catálogo
+        if (filtro == null) {
+            RespuestasCodificadas.Pagina pagina = respuestasCodificadas.pagina(version, despues, limite, proyeccion, cbor);
+            if (pagina != null) {
+                return CompletableFuture.completedFuture(
+                        respuestaPagina(pagina, siguientePagina, limite, etiquetaCatalogo, ultimaModificacion, cbor));
+            }
+        }
+        return asincrono(() -> {
+            try {
+                // Se pide una fila extra para saber si existe una página siguiente
+                List<Producto> productos = filtro == null
+                        ? productoService.listarPagina(despues, limite + 1, proyeccion)
+                        : productoService.buscarProductos(filtro, despuesDeId, limite + 1, consulta);
+                boolean hayMas = productos.size() > limite;
+                if (hayMas) {
+                    productos = productos.subList(0, limite);
+                }
+                String siguienteCursor = hayMas ? CursorPagina.codificar(filtro, productos.get(limite - 1)) : null;
+                if (filtro == null) {
+                    RespuestasCodificadas.Pagina pagina = respuestasCodificadas.guardarPagina(
+                            version, despues, limite, proyeccion, cbor, productos, hayMas ? productos.get(limite - 1).getId() : null);
+                    return respuestaPagina(pagina, siguientePagina, limite, etiquetaCatalogo, ultimaModificacion, cbor);
+                }
+                Response.ResponseBuilder respuesta = conSiguientePagina(Response.ok(), siguientePagina, limite, siguienteCursor);
+                return conValidadores(respuesta, etiquetaCatalogo, ultimaModificacion).entity(entidad(productos, proyeccion, cbor)).build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al obtener los productos: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, ProductoCbor.APPLICATION_CBOR})
+    @Path("/search")
+    @Operation(summary = "Buscar productos por texto", description = "Busca en nombre y descripción ignorando mayúsculas y tildes; "
+            + "cada palabra puede ser el comienzo de un término y los resultados se ordenan por relevancia")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Productos encontrados, del más al menos relevante"),
+            @APIResponse(responseCode = "400", description = "Consulta o límite inválidos"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> buscarProductos(
+            @Parameter(description = "Texto a buscar") @QueryParam("q") String q,
+            @Parameter(description = "Máximo de productos a devolver") @QueryParam("limit") Integer limit,
+            @Parameter(description = "Propiedades a incluir separadas por comas, p. ej. id,nombre,precio") @QueryParam("fields") String fields) {
+        int limite = limit != null ? limit : limitePorDefecto;
+        if (q == null || q.isBlank()) {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("El parámetro q es obligatorio")
+                    .build());
+        }
+        if (limite < 1 || limite > limiteMaximo) {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("El parámetro limit debe estar entre 1 y " + limiteMaximo)
+                    .build());
+        }
+        Proyeccion proyeccion;
+        try {
+            proyeccion = proyeccionDe(fields);
+        } catch (WebApplicationException e) {
+            return CompletableFuture.completedFuture(e.getResponse());
+        }
+        boolean cbor = prefiereCbor();
+
+        return asincrono(() -> {
+            try {
+                return Response.ok(entidad(productoService.buscarTexto(q, limite), proyeccion, cbor)).build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al buscar productos: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    @GET
+    @Path("/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Operation(summary = "Suscribirse a los cambios de productos", description = "Eventos creado (producto completo), "
+            + "actualizado y eliminado (solo id) y recargar cuando hay que volver a pedir el listado. "
+            + "Al reconectar con Last-Event-ID se reenvían los eventos perdidos")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Flujo de eventos abierto"),
+            @APIResponse(responseCode = "503", description = "Demasiados suscriptores")
+    })
+    public void suscribirCambios(@Context SseEventSink sink, @Context Sse sse,
+            @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId) {
+        Long ultimoId = null;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                ultimoId = Long.valueOf(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // ID ajeno: se trata como demasiado antiguo y el cliente recibe un aviso de recarga
+                ultimoId = Long.MIN_VALUE;
+            }
+        }
+        if (!difusorCambios.suscribir(sink, sse, ultimoId)) {
+            throw new ServiceUnavailableException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, 30)
+                    .entity("Demasiados suscriptores de eventos, intente de nuevo más tarde")
+                    .build());
+        }
+    }
+
+    @GET
+    @Path("/export")
+    @Produces(ProductoCsv.TEXT_CSV)
+    @Operation(summary = "Exportar productos en CSV", description = "Todos los productos ordenados por ID, con cabecera, "
+            + "escritos a medida que se leen de la base de datos")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Exportación en curso"),
+            @APIResponse(responseCode = "400", description = "Campos desconocidos en fields"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public Response exportarCsv(
+            @Parameter(description = "Propiedades a incluir separadas por comas, p. ej. id,nombre,precio") @QueryParam("fields") String fields) {
+        Proyeccion proyeccion = proyeccionDe(fields);
+        return exportacion("productos.csv", salida -> {
+            EscritorCsv escritor = new EscritorCsv(salida);
+            ProductoCsv.cabecera(escritor, proyeccion);
+            recorrer(producto -> ProductoCsv.escribir(escritor, producto, proyeccion), proyeccion);
+            escritor.flush();
+        });
+    }
+
+    @GET
+    @Path("/export")
+    @Produces(ProductoJson.APPLICATION_NDJSON)
+    @Operation(summary = "Exportar productos en NDJSON", description = "Todos los productos ordenados por ID, un objeto JSON "
+            + "por línea, escritos a medida que se leen de la base de datos")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Exportación en curso"),
+            @APIResponse(responseCode = "400", description = "Campos desconocidos en fields"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public Response exportarNdjson(
+            @Parameter(description = "Propiedades a incluir separadas por comas, p. ej. id,nombre,precio") @QueryParam("fields") String fields) {
+        Proyeccion proyeccion = proyeccionDe(fields);
+        return exportacion("productos.ndjson", salida -> {
+            recorrer(producto -> ProductoJson.escribirLinea(salida, producto, proyeccion), proyeccion);
+            salida.flush();
+        });
+    }
+
+    @POST
+    @Path("/import")
+    @Consumes(ProductoCsv.TEXT_CSV)
+    @Produces({MediaType.APPLICATION_JSON, ProductoJson.APPLICATION_NDJSON})
+    @Operation(summary = "Importar productos desde CSV", description = "La cabecera indica las columnas (nombre obligatoria). "
+            + "El cuerpo se procesa a medida que llega, en lotes que se confirman por separado; "
+            + "las filas con errores se informan con su línea y no detienen la importación")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Importación terminada, con el recuento y los errores por fila; "
+                    + "con Accept: application/x-ndjson, una línea de progreso por lote confirmado y la última con el resultado"),
+            @APIResponse(responseCode = "400", description = "Modo o cuerpo inválido"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> importarCsv(
+            @Parameter(description = "insert crea todas las filas; upsert actualiza las que traen un ID existente") @QueryParam("mode") @DefaultValue("insert") String mode,
+            InputStream cuerpo) {
+        return importacion(mode, cuerpo, entrada -> ProductoCsv.fuente(new LectorCsv(entrada)));
+    }
+
+    @POST
+    @Path("/import")
+    @Consumes(ProductoJson.APPLICATION_NDJSON)
+    @Produces({MediaType.APPLICATION_JSON, ProductoJson.APPLICATION_NDJSON})
+    @Operation(summary = "Importar productos desde NDJSON", description = "Un objeto JSON por línea, con las mismas "
+            + "propiedades que devuelve la API. El cuerpo se procesa a medida que llega, en lotes que se confirman "
+            + "por separado; las filas con errores se informan con su línea y no detienen la importación")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Importación terminada, con el recuento y los errores por fila; "
+                    + "con Accept: application/x-ndjson, una línea de progreso por lote confirmado y la última con el resultado"),
+            @APIResponse(responseCode = "400", description = "Modo o cuerpo inválido"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> importarNdjson(
+            @Parameter(description = "insert crea todas las filas; upsert actualiza las que traen un ID existente") @QueryParam("mode") @DefaultValue("insert") String mode,
+            InputStream cuerpo) {
+        return importacion(mode, cuerpo, ProductoJson::fuente);
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, ProductoCbor.APPLICATION_CBOR})
     @Path("/{id}")
     @Operation(summary = "Obtener un producto por ID", description = "Retorna un producto específico basado en su ID")
     @APIResponses({
             @APIResponse(responseCode = "200", description = "Producto encontrado"),
+            @APIResponse(responseCode = "304", description = "El producto no cambió desde la versión indicada en If-None-Match"),
             @APIResponse(responseCode = "404", description = "Producto no encontrado"),
             @APIResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public Response obtenerProducto(@PathParam("id") int id) {
+    public CompletionStage<Response> obtenerProducto(@PathParam("id") int id,
+                                                     @Parameter(description = "Propiedades a incluir separadas por comas, p. ej. id,nombre,precio") @QueryParam("fields") String fields,
+                                                     @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        Proyeccion proyeccion;
         try {
-            return productoService.obtenerProducto(id)
-                    .map(producto -> Response.ok(producto).build())
-                    .orElse(Response.status(Response.Status.NOT_FOUND)
-                            .entity("Producto con ID " + id + " no encontrado")
-                            .build());
-        } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al obtener el producto: " + e.getMessage())
-                    .build();
+            proyeccion = proyeccionDe(fields);
+        } catch (WebApplicationException e) {
+            return CompletableFuture.completedFuture(e.getResponse());
         }
+
+        boolean cbor = prefiereCbor();
+
+        // Solo ETag, calculado de la propia fila: la tabla no guarda fecha de modificación por producto
+        // y la del catálogo no sirve para validar un producto concreto
+        return asincrono(() -> {
+            try {
+                return productoService.obtenerProducto(id)
+                        .map(producto -> {
+                            EntityTag etiqueta = etiquetaDe(producto);
+                            if (condicionalHabilitado && coincide(ifNoneMatch, etiqueta)) {
+                                return conValidadores(Response.notModified(), etiqueta, null).build();
+                            }
+                            byte[] cuerpo = respuestasCodificadas.producto(producto, proyeccion, cbor);
+                            return conValidadores(Response.ok(cuerpo, tipo(cbor)), etiqueta, null).build();
+                        })
+                        .orElse(Response.status(Response.Status.NOT_FOUND)
+                                .entity("Producto con ID " + id + " no encontrado")
+                                .build());
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al obtener el producto: " + e.getMessage())
+                        .build();
+            }
+        });
     }
 
     @POST
+    @Produces({MediaType.APPLICATION_JSON, ProductoCbor.APPLICATION_CBOR})
     @Operation(summary = "Crear un nuevo producto", description = "Crea un nuevo producto en la base de datos")
     @APIResponses({
             @APIResponse(responseCode = "201", description = "Producto creado exitosamente"),
             @APIResponse(responseCode = "400", description = "Datos del producto inválidos"),
             @APIResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public Response crearProducto(Producto producto) {
-        if (producto == null) {
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity("El cuerpo de la solicitud no puede estar vacío")
-                    .build();
-        }
+    public CompletionStage<Response> crearProducto(Producto producto) {
+        return escritura(() -> {
+            if (producto == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("El cuerpo de la solicitud no puede estar vacío")
+                        .build();
+            }
+            String error = ReglasProducto.error(producto);
+            if (error != null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+            }
 
-        try {
-            Producto nuevoProducto = productoService.crearProducto(producto);
-            return Response.status(Response.Status.CREATED)
-                    .entity(nuevoProducto)
-                    .build();
-        } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al crear el producto: " + e.getMessage())
-                    .build();
-        }
+            try {
+                Producto nuevoProducto = productoService.crearProducto(producto);
+                return Response.status(Response.Status.CREATED)
+                        .entity(nuevoProducto)
+                        .build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al crear el producto: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    @POST
+    @Path("/batch")
+    @Operation(summary = "Crear productos en lote", description = "Crea varios productos en una sola transacción usando JDBC batch")
+    @APIResponses({
+            @APIResponse(responseCode = "201", description = "Productos creados exitosamente"),
+            @APIResponse(responseCode = "400", description = "Lista de productos inválida"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> crearProductos(List<Producto> productos) {
+        return escritura(() -> {
+            if (productos == null || productos.isEmpty() || productos.contains(null)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("El cuerpo de la solicitud debe ser una lista de productos no vacía")
+                        .build();
+            }
+            Response invalido = loteInvalido(productos);
+            if (invalido != null) {
+                return invalido;
+            }
+
+            try {
+                List<Producto> nuevosProductos = productoService.crearProductos(productos);
+                return Response.status(Response.Status.CREATED)
+                        .entity(nuevosProductos)
+                        .build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al crear los productos: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    @PUT
+    @Path("/batch")
+    @Operation(summary = "Actualizar productos en lote", description = "Actualiza todos los campos de varios productos en una sola transacción")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Lote procesado exitosamente"),
+            @APIResponse(responseCode = "400", description = "Lista de productos inválida"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> actualizarProductos(List<Producto> productos) {
+        return escritura(() -> {
+            if (productos == null || productos.isEmpty() || productos.stream().anyMatch(p -> p == null || p.getId() <= 0)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("El cuerpo de la solicitud debe ser una lista no vacía de productos con ID")
+                        .build();
+            }
+            Response invalido = loteInvalido(productos);
+            if (invalido != null) {
+                return invalido;
+            }
+
+            try {
+                int actualizados = productoService.actualizarProductos(productos);
+                return Response.ok(resultadoLote(productos.size(), actualizados)).build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al actualizar los productos: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    // POST y no DELETE: muchos proxies y clientes descartan el cuerpo de un DELETE
+    @POST
+    @Path("/batch/delete")
+    @Operation(summary = "Eliminar productos en lote", description = "Elimina varios productos por ID en una sola transacción")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Lote procesado exitosamente"),
+            @APIResponse(responseCode = "400", description = "Lista de IDs inválida"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> eliminarProductos(List<Integer> ids) {
+        return escritura(() -> {
+            if (ids == null || ids.isEmpty() || ids.contains(null)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("El cuerpo de la solicitud debe ser una lista de IDs no vacía")
+                        .build();
+            }
+
+            try {
+                int eliminados = productoService.eliminarProductos(ids);
+                return Response.ok(resultadoLote(ids.size(), eliminados)).build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al eliminar los productos: " + e.getMessage())
+                        .build();
+            }
+        });
     }
 
     @PUT
@@ -96,33 +576,47 @@ public class ProductoResource {
             @APIResponse(responseCode = "200", description = "Producto actualizado exitosamente"),
             @APIResponse(responseCode = "400", description = "Datos del producto inválidos"),
             @APIResponse(responseCode = "404", description = "Producto no encontrado"),
+            @APIResponse(responseCode = "412", description = "La versión indicada en If-Match no es la actual"),
             @APIResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public Response actualizarProducto(@PathParam("id") int id, Producto producto) {
-        if (producto == null) {
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity("El cuerpo de la solicitud no puede estar vacío")
-                    .build();
-        }
+    public CompletionStage<Response> actualizarProducto(@PathParam("id") int id,
+                                                        @Parameter(description = "ETag de la versión que se quiere modificar") @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+                                                        Producto producto) {
+        return escritura(() -> {
+            if (producto == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("El cuerpo de la solicitud no puede estar vacío")
+                        .build();
+            }
+            String error = ReglasProducto.error(producto);
+            if (error != null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+            }
 
-        producto.setId(id);
+            producto.setId(id);
 
-        try {
-            boolean actualizado = productoService.actualizarProducto(producto);
-            if (actualizado) {
-                return Response.ok()
-                        .entity("Producto actualizado exitosamente")
+            try {
+                Integer versionEsperada = versionDeIfMatch(id, ifMatch);
+                boolean actualizado = productoService.actualizarProducto(producto, versionEsperada);
+                if (actualizado) {
+                    return conNuevaVersion(Response.ok(), versionEsperada)
+                            .entity("Producto actualizado exitosamente")
+                            .build();
+                } else {
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity("Producto con ID " + id + " no encontrado")
+                            .build();
+                }
+            } catch (ConflictoVersionException e) {
+                return Response.status(Response.Status.PRECONDITION_FAILED)
+                        .entity(e.getMessage())
                         .build();
-            } else {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity("Producto con ID " + id + " no encontrado")
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al actualizar el producto: " + e.getMessage())
                         .build();
             }
-        } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al actualizar el producto: " + e.getMessage())
-                    .build();
-        }
+        });
     }
 
     @PATCH
@@ -132,31 +626,122 @@ public class ProductoResource {
             @APIResponse(responseCode = "200", description = "Producto actualizado parcialmente con éxito"),
             @APIResponse(responseCode = "400", description = "Datos del producto inválidos"),
             @APIResponse(responseCode = "404", description = "Producto no encontrado"),
+            @APIResponse(responseCode = "412", description = "La versión indicada en If-Match no es la actual"),
             @APIResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public Response actualizarProductoParcial(@PathParam("id") int id, Producto producto) {
-        if (producto == null) {
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity("El cuerpo de la solicitud no puede estar vacío")
-                    .build();
-        }
+    public CompletionStage<Response> actualizarProductoParcial(@PathParam("id") int id,
+                                                               @Parameter(description = "ETag de la versión que se quiere modificar") @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+                                                               Producto producto) {
+        return escritura(() -> {
+            if (producto == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("El cuerpo de la solicitud no puede estar vacío")
+                        .build();
+            }
+            String error = ReglasProducto.errorParcial(producto);
+            if (error != null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+            }
 
-        try {
-            boolean actualizado = productoService.actualizarProductoParcial(id, producto);
-            if (actualizado) {
-                return Response.ok()
-                        .entity("Producto actualizado parcialmente con éxito")
+            try {
+                Integer versionEsperada = versionDeIfMatch(id, ifMatch);
+                boolean actualizado = productoService.actualizarProductoParcial(id, producto, versionEsperada);
+                if (actualizado) {
+                    return conNuevaVersion(Response.ok(), versionEsperada)
+                            .entity("Producto actualizado parcialmente con éxito")
+                            .build();
+                } else {
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity("Producto con ID " + id + " no encontrado")
+                            .build();
+                }
+            } catch (ConflictoVersionException e) {
+                return Response.status(Response.Status.PRECONDITION_FAILED)
+                        .entity(e.getMessage())
                         .build();
-            } else {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity("Producto con ID " + id + " no encontrado")
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al actualizar parcialmente el producto: " + e.getMessage())
                         .build();
             }
-        } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al actualizar parcialmente el producto: " + e.getMessage())
-                    .build();
-        }
+        });
+    }
+
+    @POST
+    @Path("/{id}/stock/reserve")
+    @Operation(summary = "Reservar stock", description = "Descuenta unidades de la cantidad de forma atómica, solo si quedan suficientes")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Stock reservado con éxito"),
+            @APIResponse(responseCode = "400", description = "Cantidad inválida"),
+            @APIResponse(responseCode = "404", description = "Producto no encontrado"),
+            @APIResponse(responseCode = "409", description = "No queda stock suficiente"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> reservarStock(@PathParam("id") int id,
+                                                   @Parameter(description = "Unidades a reservar") @QueryParam("cantidad") @DefaultValue("1") int cantidad) {
+        return escritura(() -> {
+            if (cantidad <= 0) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("La cantidad debe ser mayor que 0")
+                        .build();
+            }
+
+            try {
+                if (productoService.reservarStock(id, cantidad)) {
+                    return Response.ok()
+                            .entity("Stock reservado con éxito")
+                            .build();
+                } else {
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity("Producto con ID " + id + " no encontrado")
+                            .build();
+                }
+            } catch (StockInsuficienteException e) {
+                return Response.status(Response.Status.CONFLICT)
+                        .entity(e.getMessage())
+                        .build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al reservar stock: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    @POST
+    @Path("/{id}/stock/release")
+    @Operation(summary = "Liberar stock", description = "Devuelve a la cantidad unidades reservadas antes, de forma atómica")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Stock liberado con éxito"),
+            @APIResponse(responseCode = "400", description = "Cantidad inválida"),
+            @APIResponse(responseCode = "404", description = "Producto no encontrado"),
+            @APIResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletionStage<Response> liberarStock(@PathParam("id") int id,
+                                                  @Parameter(description = "Unidades a devolver") @QueryParam("cantidad") @DefaultValue("1") int cantidad) {
+        return escritura(() -> {
+            if (cantidad <= 0) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("La cantidad debe ser mayor que 0")
+                        .build();
+            }
+
+            try {
+                if (productoService.liberarStock(id, cantidad)) {
+                    return Response.ok()
+                            .entity("Stock liberado con éxito")
+                            .build();
+                } else {
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity("Producto con ID " + id + " no encontrado")
+                            .build();
+                }
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al liberar stock: " + e.getMessage())
+                        .build();
+            }
+        });
     }
 
     @DELETE
@@ -167,22 +752,461 @@ public class ProductoResource {
             @APIResponse(responseCode = "404", description = "Producto no encontrado"),
             @APIResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public Response eliminarProducto(@PathParam("id") int id) {
+    public CompletionStage<Response> eliminarProducto(@PathParam("id") int id) {
+        return escritura(() -> {
+            try {
+                boolean eliminado = productoService.eliminarProducto(id);
+                if (eliminado) {
+                    return Response.ok()
+                            .entity("Producto eliminado exitosamente")
+                            .build();
+                } else {
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity("Producto con ID " + id + " no encontrado")
+                            .build();
+                }
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al eliminar el producto: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    // El trabajo con la base de datos se delega al ejecutor acotado y libera el hilo de la petición
+    private CompletionStage<Response> asincrono(Callable<Response> operacion) {
+        return databaseExecutor.ejecutar(operacion).exceptionally(this::respuestaDeFallo);
+    }
+
+    // Las escrituras no expiran en el ejecutor: se responde cuando la transacción termina
+    private CompletionStage<Response> escritura(Callable<Response> operacion) {
+        return databaseExecutor.ejecutarEscritura(operacion).exceptionally(this::respuestaDeFallo);
+    }
+
+    private CompletionStage<Response> transferencia(Callable<Response> operacion) {
+        return databaseExecutor.ejecutarTransferencia(operacion).exceptionally(this::respuestaDeFallo);
+    }
+
+    private Response respuestaDeFallo(Throwable error) {
+        Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (causa instanceof WebApplicationException) {
+            return ((WebApplicationException) causa).getResponse();
+        }
+        if (causa instanceof CircuitBreakerOpenException) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, 5)
+                    .entity("Base de datos no disponible temporalmente, intente de nuevo más tarde")
+                    .build();
+        }
+        if (causa instanceof FaultToleranceException || causa instanceof RejectedExecutionException) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSegundos)
+                    .entity("Servidor saturado, intente de nuevo más tarde")
+                    .build();
+        }
+        if (causa instanceof TimeoutException) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSegundos)
+                    .entity("Tiempo de espera agotado al acceder a la base de datos")
+                    .build();
+        }
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity("Error interno del servidor: " + causa.getMessage())
+                .build();
+    }
+
+    // If-Match con la versión del producto; ausente o "*" no exige versión. Sin concurrencia optimista
+    // el ETag es el resumen del contenido: se compara con el del producto en la base principal justo
+    // antes de escribir (sin la atomicidad de la versión) y no hay versión que esperar. If-Match usa
+    // comparación fuerte (RFC 9110): una etiqueta débil W/"..." nunca coincide.
+    private Integer versionDeIfMatch(int id, String ifMatch) throws SQLException {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        if (!concurrenciaOptimista) {
+            Optional<Producto> actual = productoService.obtenerProductoActual(id);
+            if (actual.isPresent() && !coincideFuerte(ifMatch, etiquetaDe(actual.get()))) {
+                throw new WebApplicationException(Response.status(Response.Status.PRECONDITION_FAILED)
+                        .entity("El producto con ID " + id + " cambió desde la versión indicada en If-Match")
+                        .build());
+            }
+            return null;
+        }
+        String valor = ifMatch.trim();
+        if (valor.startsWith("W/")) {
+            throw new WebApplicationException(Response.status(Response.Status.PRECONDITION_FAILED)
+                    .entity("If-Match no admite etiquetas débiles: " + ifMatch)
+                    .build());
+        }
+        try {
+            return Integer.valueOf(valor.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new WebApplicationException(Response.status(Response.Status.PRECONDITION_FAILED)
+                    .entity("Cabecera If-Match inválida: " + ifMatch)
+                    .build());
+        }
+    }
+
+    private Response.ResponseBuilder conNuevaVersion(Response.ResponseBuilder respuesta, Integer versionEsperada) {
+        return versionEsperada != null ? respuesta.tag(new EntityTag(String.valueOf(versionEsperada + 1))) : respuesta;
+    }
+
+    // Cache-Control: no-cache obliga al cliente a revalidar, que con los validadores cuesta un 304.
+    // JSON y CBOR comparten validadores: Vary evita que una caché entregue uno por otro.
+    private Response.ResponseBuilder conValidadores(Response.ResponseBuilder respuesta, EntityTag etiqueta, Date ultimaModificacion) {
+        respuesta.header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (!condicionalHabilitado) {
+            return respuesta;
+        }
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        if (etiqueta != null) {
+            respuesta.tag(etiqueta);
+        }
+        if (ultimaModificacion != null) {
+            respuesta.lastModified(ultimaModificacion);
+        }
+        return respuesta.cacheControl(cacheControl);
+    }
+
+    // La versión si hay concurrencia optimista (la misma que acepta If-Match), si no un resumen del contenido
+    private EntityTag etiquetaDe(Producto producto) {
+        if (producto.getVersion() != null) {
+            return new EntityTag(String.valueOf(producto.getVersion()));
+        }
+        BigDecimal precio = producto.getPrecio() != null ? producto.getPrecio().stripTrailingZeros() : null;
+        long resumen = 17;
+        resumen = 31 * resumen + producto.getId();
+        resumen = 31 * resumen + Objects.hashCode(producto.getNombre());
+        resumen = 31 * resumen + Objects.hashCode(producto.getDescripcion());
+        resumen = 31 * resumen + Objects.hashCode(precio);
+        resumen = 31 * resumen + producto.getCantidad();
+        // En milisegundos, la precisión del catálogo en memoria, para que coincida venga de donde venga
+        LocalDateTime fecha = producto.getFechaCreacion() != null ? producto.getFechaCreacion().truncatedTo(ChronoUnit.MILLIS) : null;
+        resumen = 31 * resumen + Objects.hashCode(fecha);
+        return new EntityTag(Long.toHexString(resumen));
+    }
+
+    // Comparación fuerte de If-Match: "*" o una etiqueta de la lista sin W/
+    private static boolean coincideFuerte(String ifMatch, EntityTag etiqueta) {
+        for (String candidata : ifMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.equals("*") || valor.equals("\"" + etiqueta.getValue() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Comparación débil de If-None-Match: "*" o cualquiera de las etiquetas de la lista
+    private static boolean coincide(String ifNoneMatch, EntityTag etiqueta) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals("\"" + etiqueta.getValue() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Proyeccion proyeccionDe(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return Proyeccion.TODOS;
+        }
         try {
-            boolean eliminado = productoService.eliminarProducto(id);
-            if (eliminado) {
-                return Response.ok()
-                        .entity("Producto eliminado exitosamente")
+            return Proyeccion.de(fields);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(e.getMessage())
+                    .build());
+        }
+    }
+
+    private List<Integer> idsDe(String ids) {
+        List<Integer> lista = new ArrayList<>();
+        for (String valor : ids.split(",")) {
+            if (valor.isBlank()) {
+                continue;
+            }
+            try {
+                lista.add(Integer.valueOf(valor.trim()));
+            } catch (NumberFormatException e) {
+                throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("ID inválido en el parámetro ids: " + valor)
+                        .build());
+            }
+        }
+        if (lista.isEmpty() || lista.size() > limiteMaximo) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("El parámetro ids debe contener entre 1 y " + limiteMaximo + " IDs")
+                    .build());
+        }
+        return lista;
+    }
+
+    // JSON salvo que el cliente ponga CBOR por delante; */* se queda con JSON. Se decide en el hilo
+    // de la petición porque HttpHeaders no es válido en el de la consulta.
+    private boolean prefiereCbor() {
+        for (MediaType aceptado : httpHeaders.getAcceptableMediaTypes()) {
+            if (aceptado.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return false;
+            }
+            if (aceptado.isCompatible(ProductoCbor.APPLICATION_CBOR_TYPE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MediaType tipo(boolean cbor) {
+        return cbor ? ProductoCbor.APPLICATION_CBOR_TYPE : MediaType.APPLICATION_JSON_TYPE;
+    }
+
+    // Serializadores escritos a mano: solo las propiedades de la proyección y sin reflexión de JSON-B
+    private Object entidad(List<Producto> productos, Proyeccion proyeccion, boolean cbor) {
+        return cbor ? ProductoCbor.lista(productos, proyeccion) : ProductoJson.lista(productos, proyeccion);
+    }
+
+    private Response respuestaPagina(RespuestasCodificadas.Pagina pagina, UriBuilder siguientePagina, int limite,
+                                     EntityTag etiquetaCatalogo, Date ultimaModificacion, boolean cbor) {
+        Response.ResponseBuilder respuesta = Response.ok(pagina.getCuerpo(), tipo(cbor));
+        Integer siguienteCursor = pagina.getSiguienteCursor();
+        conSiguientePagina(respuesta, siguientePagina, limite, siguienteCursor != null ? siguienteCursor.toString() : null);
+        return conValidadores(respuesta, etiquetaCatalogo, ultimaModificacion).build();
+    }
+
+    private Response.ResponseBuilder conSiguientePagina(Response.ResponseBuilder respuesta, UriBuilder siguientePagina,
+                                                        int limite, String siguienteCursor) {
+        if (siguienteCursor == null) {
+            return respuesta;
+        }
+        return respuesta.header("X-Next-Cursor", siguienteCursor)
+                .link(siguientePagina
+                        .replaceQueryParam("limit", limite)
+                        .replaceQueryParam("after", siguienteCursor)
+                        .build(), "next");
+    }
+
+    // 400 con la posición del primer producto que no cumple ReglasProducto; null si todos la cumplen
+    private static Response loteInvalido(List<Producto> productos) {
+        for (int i = 0; i < productos.size(); i++) {
+            String error = ReglasProducto.error(productos.get(i));
+            if (error != null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Producto en la posición " + i + ": " + error)
                         .build();
-            } else {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity("Producto con ID " + id + " no encontrado")
+            }
+        }
+        return null;
+    }
+
+    private JsonObject resultadoLote(int solicitados, int afectados) {
+        return Json.createObjectBuilder()
+                .add("solicitados", solicitados)
+                .add("afectados", afectados)
+                .build();
+    }
+
+    // Texto UTF-8 con búfer propio; la compresión, si la hay, va por debajo
+    private Response exportacion(String fichero, EscritorTexto escritura) {
+        // El hilo que escribe la respuesta espera mientras la exportación corre en el pool de transferencias
+        StreamingOutput cuerpo = salida -> esperarTransferencia(databaseExecutor.ejecutarTransferencia(() -> {
+            Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 8192);
+            escritura.escribir(escritor);
+            return null;
+        }));
+        return Response.ok(cuerpo)
+                .header("Content-Disposition", "attachment; filename=\"" + fichero + "\"")
+                .build();
+    }
+
+    private CompletionStage<Response> importacion(String mode, InputStream cuerpo, LectorFuente lectorFuente) {
+        boolean actualizarExistentes;
+        if ("insert".equalsIgnoreCase(mode)) {
+            actualizarExistentes = false;
+        } else if ("upsert".equalsIgnoreCase(mode)) {
+            actualizarExistentes = true;
+        } else {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("El parámetro mode debe ser insert o upsert")
+                    .build());
+        }
+        Charset juegoCaracteres;
+        try {
+            juegoCaracteres = juegoCaracteres(httpHeaders.getMediaType());
+        } catch (WebApplicationException e) {
+            return CompletableFuture.completedFuture(e.getResponse());
+        }
+        if (prefiereNdjson()) {
+            return CompletableFuture.completedFuture(
+                    importacionConProgreso(new InputStreamReader(cuerpo, juegoCaracteres), lectorFuente, actualizarExistentes));
+        }
+
+        return transferencia(() -> {
+            try {
+                Reader entrada = new InputStreamReader(cuerpo, juegoCaracteres);
+                FuenteProductos fuente = lectorFuente.leer(entrada);
+                return Response.ok(resultadoImportacion(productoService.importarProductos(fuente, actualizarExistentes, avance -> {
+                }))).build();
+            } catch (SQLException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity("Error al importar los productos: " + e.getMessage())
                         .build();
+            } catch (IOException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Cuerpo de la importación inválido: " + e.getMessage())
+                        .build();
+            }
+        });
+    }
+
+    // Una línea NDJSON con el recuento tras cada lote confirmado y la última con el resultado completo.
+    // El estado 200 ya se envió con la primera línea: un fallo a mitad se informa en la última como "error"
+    private Response importacionConProgreso(Reader entrada, LectorFuente lectorFuente, boolean actualizarExistentes) {
+        StreamingOutput cuerpo = salida -> esperarTransferencia(databaseExecutor.ejecutarTransferencia(() -> {
+            Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 8192);
+            JsonObject fin;
+            try {
+                FuenteProductos fuente = lectorFuente.leer(entrada);
+                fin = resultadoImportacion(productoService.importarProductos(fuente, actualizarExistentes, avance -> {
+                    escritor.write(recuentoImportacion(avance).build().toString());
+                    escritor.write('\n');
+                    escritor.flush();
+                }));
+            } catch (SQLException | IOException e) {
+                fin = Json.createObjectBuilder()
+                        .add("error", "Error al importar los productos: " + e.getMessage())
+                        .build();
+            }
+            escritor.write(fin.toString());
+            escritor.write('\n');
+            escritor.flush();
+            return null;
+        }));
+        return Response.ok(cuerpo, ProductoJson.APPLICATION_NDJSON).build();
+    }
+
+    // JSON salvo que el cliente ponga NDJSON por delante
+    private boolean prefiereNdjson() {
+        MediaType ndjson = MediaType.valueOf(ProductoJson.APPLICATION_NDJSON);
+        for (MediaType aceptado : httpHeaders.getAcceptableMediaTypes()) {
+            if (aceptado.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return false;
+            }
+            if (aceptado.isCompatible(ndjson)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // join no atiende interrupciones: la salida no se devuelve al contenedor mientras alguien escribe en ella
+    private static void esperarTransferencia(CompletableFuture<Void> transferencia) throws IOException {
+        try {
+            transferencia.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw (IOException) causa;
+            }
+            if (causa instanceof RejectedExecutionException) {
+                throw new ServiceUnavailableException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, 5)
+                        .entity("Demasiadas transferencias en curso, intente de nuevo más tarde")
+                        .build());
             }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new IOException(causa);
+        }
+    }
+
+    // UTF-8 salvo que Content-Type indique otro
+    private static Charset juegoCaracteres(MediaType tipo) {
+        String nombre = tipo != null ? tipo.getParameters().get(MediaType.CHARSET_PARAMETER) : null;
+        if (nombre == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(nombre);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Juego de caracteres no admitido: " + nombre)
+                    .build());
+        }
+    }
+
+    private JsonObject resultadoImportacion(ResultadoImportacion resultado) {
+        JsonArrayBuilder errores = Json.createArrayBuilder();
+        for (ResultadoImportacion.ErrorFila error : resultado.getErrores()) {
+            errores.add(Json.createObjectBuilder()
+                    .add("linea", error.getLinea())
+                    .add("mensaje", error.getMensaje()));
+        }
+        return recuentoImportacion(resultado)
+                .add("errores", errores)
+                .build();
+    }
+
+    private static JsonObjectBuilder recuentoImportacion(ResultadoImportacion resultado) {
+        return Json.createObjectBuilder()
+                .add("filas", resultado.getFilas())
+                .add("creados", resultado.getCreados())
+                .add("actualizados", resultado.getActualizados())
+                .add("erroneas", resultado.getErroneas());
+    }
+
+    @FunctionalInterface
+    private interface EscritorTexto {
+        void escribir(Writer salida) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface LectorFuente {
+        FuenteProductos leer(Reader entrada) throws IOException;
+    }
+
+    // Escribe las filas directamente en la respuesta a medida que llegan del ResultSet
+    // Si falla no se cierra el generador: cerrarlo con el array a medias lanzaría otra excepción que ocultaría esta
+    private StreamingOutput streamingProductos(Proyeccion proyeccion, boolean cbor) {
+        if (cbor) {
+            // Lista de longitud indefinida: no hace falta saber cuántos productos hay
+            return salida -> {
+                EscritorCbor escritor = new EscritorCbor(salida);
+                escritor.inicioListaIndefinida();
+                recorrer(producto -> ProductoCbor.escribir(escritor, producto, proyeccion), proyeccion);
+                escritor.fin().flush();
+            };
+        }
+        return salida -> {
+            JsonGenerator generador = ProductoJson.crearGenerador(salida);
+            generador.writeStartArray();
+            recorrer(producto -> ProductoJson.escribir(generador, producto, proyeccion), proyeccion);
+            generador.writeEnd();
+            generador.close();
+        };
+    }
+
+    private void recorrer(ProcesadorProducto procesador, Proyeccion proyeccion) throws IOException {
+        try {
+            productoService.recorrerProductos(procesador, proyeccion);
         } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al eliminar el producto: " + e.getMessage())
-                    .build();
+            throw new InternalServerErrorException(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error al obtener los productos: " + e.getMessage())
+                    .build());
+        } catch (FaultToleranceException e) {
+            throw new ServiceUnavailableException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSegundos)
+                    .entity("Servidor saturado, intente de nuevo más tarde")
+                    .build());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package com.microprofile.rest;
+
+import com.microprofile.data.Producto;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.service.CambioProducto;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+// Cuerpos de respuesta ya serializados (JSON-P o CBOR, sin JSON-B) para las lecturas más repetidas:
+// un producto por ID y las páginas del listado sin filtros. Servir un acierto es copiar los bytes.
+// Un producto vale mientras el que se pide tenga los mismos valores que el que se serializó; una página,
+// mientras no cambie la versión del catálogo y como mucho productos.cache.ttlSegundos: la versión solo
+// ve las escrituras de esta instancia. Los eventos de cambio liberan la memoria antes.
+@ApplicationScoped
+public class RespuestasCodificadas {
+
+    // Variantes por producto: cada proyección en JSON y en CBOR
+    private static final int VARIANTES = Proyeccion.TODOS.getMascara() + 1;
+
+    @Inject
+    @ConfigProperty(name = "productos.respuestas.cache.habilitada", defaultValue = "true")
+    private boolean habilitada;
+
+    @Inject
+    @ConfigProperty(name = "productos.respuestas.cache.maxBytesProductos", defaultValue = "16777216")
+    private long maxBytesProductos;
+
+    @Inject
+    @ConfigProperty(name = "productos.respuestas.cache.maxBytesPaginas", defaultValue = "16777216")
+    private long maxBytesPaginas;
+
+    // Cuerpos mayores no se guardan para que una sola página no desaloje todo lo demás
+    @Inject
+    @ConfigProperty(name = "productos.respuestas.cache.maxBytesEntrada", defaultValue = "262144")
+    private int maxBytesEntrada;
+
+    // La misma expiración que ProductoCache; acota lo que dura una página tras un cambio ajeno a esta instancia
+    @Inject
+    @ConfigProperty(name = "productos.cache.ttlSegundos", defaultValue = "60")
+    private long ttlSegundos;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lru productos = new Lru();
+    private final Lru paginas = new Lru();
+
+    private Counter aciertos;
+    private Counter fallos;
+
+    @PostConstruct
+    void inicializar() {
+        aciertos = metricRegistry.counter(metadata("productos.respuestas.aciertos", "Respuestas servidas ya serializadas", MetricType.COUNTER));
+        fallos = metricRegistry.counter(metadata("productos.respuestas.fallos", "Respuestas que hubo que serializar", MetricType.COUNTER));
+        metricRegistry.gauge(metadata("productos.respuestas.bytes", "Bytes de respuestas serializadas en memoria", MetricType.GAUGE), this::bytes);
+    }
+
+    public byte[] producto(Producto producto, Proyeccion proyeccion, boolean cbor) {
+        Clave clave = new Clave(producto.getId(), 0, proyeccion.getMascara(), cbor);
+        if (habilitada) {
+            Entrada entrada = buscar(productos, clave);
+            if (entrada != null && mismoContenido((Producto) entrada.origen, producto)) {
+                aciertos.inc();
+                return entrada.cuerpo;
+            }
+        }
+        fallos.inc();
+        byte[] cuerpo = serializar(cbor ? ProductoCbor.objeto(producto, proyeccion) : ProductoJson.objeto(producto, proyeccion));
+        guardar(productos, clave, new Entrada(new Producto(producto), cuerpo, null, 0), maxBytesProductos);
+        return cuerpo;
+    }
+
+    // Null si no está o la versión del catálogo ya no es la misma
+    public Pagina pagina(long version, int despuesDeId, int limite, Proyeccion proyeccion, boolean cbor) {
+        if (!habilitada) {
+            return null;
+        }
+        Entrada entrada = buscar(paginas, new Clave(despuesDeId, limite, proyeccion.getMascara(), cbor));
+        if (entrada != null && entrada.origen.equals(version) && entrada.expira - System.nanoTime() > 0) {
+            aciertos.inc();
+            return new Pagina(entrada.cuerpo, entrada.siguienteCursor);
+        }
+        return null;
+    }
+
+    // La versión debe ser la leída antes de consultar la base de datos
+    public Pagina guardarPagina(long version, int despuesDeId, int limite, Proyeccion proyeccion, boolean cbor,
+                                List<Producto> lista, Integer siguienteCursor) {
+        fallos.inc();
+        byte[] cuerpo = serializar(cbor ? ProductoCbor.lista(lista, proyeccion) : ProductoJson.lista(lista, proyeccion));
+        guardar(paginas, new Clave(despuesDeId, limite, proyeccion.getMascara(), cbor),
+                new Entrada(version, cuerpo, siguienteCursor, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSegundos)), maxBytesPaginas);
+        return new Pagina(cuerpo, siguienteCursor);
+    }
+
+    // Cualquier cambio deja obsoletas todas las páginas; de los productos solo el afectado
+    void alCambiar(@Observes CambioProducto cambio) {
+        lock.lock();
+        try {
+            paginas.vaciar();
+            if (cambio.getTipo() == CambioProducto.Tipo.RECARGAR) {
+                productos.vaciar();
+                return;
+            }
+            for (int mascara = 0; mascara < VARIANTES; mascara++) {
+                productos.quitar(new Clave(cambio.getId(), 0, mascara, false));
+                productos.quitar(new Clave(cambio.getId(), 0, mascara, true));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long bytes() {
+        lock.lock();
+        try {
+            return productos.bytes + paginas.bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entrada buscar(Lru lru, Clave clave) {
+        lock.lock();
+        try {
+            return lru.entradas.get(clave);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void guardar(Lru lru, Clave clave, Entrada entrada, long maxBytes) {
+        if (!habilitada || entrada.cuerpo.length > maxBytesEntrada) {
+            return;
+        }
+        lock.lock();
+        try {
+            lru.poner(clave, entrada, maxBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Compara lo que se serializa; mucho más barato que volver a serializar
+    private static boolean mismoContenido(Producto a, Producto b) {
+        return a.getId() == b.getId()
+                && a.getCantidad() == b.getCantidad()
+                && Objects.equals(a.getNombre(), b.getNombre())
+                && Objects.equals(a.getDescripcion(), b.getDescripcion())
+                && Objects.equals(a.getPrecio(), b.getPrecio())
+                && Objects.equals(a.getFechaCreacion(), b.getFechaCreacion());
+    }
+
+    private static byte[] serializar(StreamingOutput salida) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try {
+            salida.write(bytes);
+        } catch (IOException e) {
+            // Escribir en memoria no falla por E/S
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Metadata metadata(String nombre, String descripcion, MetricType tipo) {
+        return Metadata.builder()
+                .withName(nombre)
+                .withDescription(descripcion)
+                .withType(tipo)
+                .build();
+    }
+
+    public static final class Pagina {
+        private final byte[] cuerpo;
+        private final Integer siguienteCursor;
+
+        private Pagina(byte[] cuerpo, Integer siguienteCursor) {
+            this.cuerpo = cuerpo;
+            this.siguienteCursor = siguienteCursor;
+        }
+
+        public byte[] getCuerpo() {
+            return cuerpo;
+        }
+
+        // Null si es la última página
+        public Integer getSiguienteCursor() {
+            return siguienteCursor;
+        }
+    }
+
+    private static final class Clave {
+        private final int id;
+        private final int limite;
+        private final int mascara;
+        private final boolean cbor;
+
+        private Clave(int id, int limite, int mascara, boolean cbor) {
+            this.id = id;
+            this.limite = limite;
+            this.mascara = mascara;
+            this.cbor = cbor;
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            if (!(otro instanceof Clave)) {
+                return false;
+            }
+            Clave clave = (Clave) otro;
+            return id == clave.id && limite == clave.limite && mascara == clave.mascara && cbor == clave.cbor;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, limite, mascara, cbor);
+        }
+    }
+
+    private static final class Entrada {
+        // Copia del producto serializado (se comparan sus valores) o versión del catálogo
+        private final Object origen;
+        private final byte[] cuerpo;
+        private final Integer siguienteCursor;
+        // Solo en páginas; un producto se valida por sus valores
+        private final long expira;
+
+        private Entrada(Object origen, byte[] cuerpo, Integer siguienteCursor, long expira) {
+            this.origen = origen;
+            this.cuerpo = cuerpo;
+            this.siguienteCursor = siguienteCursor;
+            this.expira = expira;
+        }
+    }
+
+    // Sin sincronizar; el acceso lo protege el lock de RespuestasCodificadas
+    private static final class Lru {
+        private final LinkedHashMap<Clave, Entrada> entradas = new LinkedHashMap<>(256, 0.75f, true);
+        private long bytes;
+
+        private void poner(Clave clave, Entrada entrada, long maxBytes) {
+            Entrada anterior = entradas.put(clave, entrada);
+            bytes += entrada.cuerpo.length - (anterior != null ? anterior.cuerpo.length : 0);
+            Iterator<Map.Entry<Clave, Entrada>> iterador = entradas.entrySet().iterator();
+            while (bytes > maxBytes && iterador.hasNext()) {
+                bytes -= iterador.next().getValue().cuerpo.length;
+                iterador.remove();
+            }
+        }
+
+        private void quitar(Clave clave) {
+            Entrada entrada = entradas.remove(clave);
+            if (entrada != null) {
+                bytes -= entrada.cuerpo.length;
+            }
+        }
+
+        private void vaciar() {
+            entradas.clear();
+            bytes = 0;
+        }
+    }
+}
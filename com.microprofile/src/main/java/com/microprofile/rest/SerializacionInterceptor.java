@@ -0,0 +1,39 @@
+package com.microprofile.rest;
+
+import com.microprofile.util.MetricasConsultas;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+// Mide cuánto tarda en escribirse el cuerpo de cada respuesta, por método del recurso.
+// En el listado completo (StreamingOutput) incluye también la lectura de la base de datos.
+@Provider
+public class SerializacionInterceptor implements WriterInterceptor {
+
+    @Inject
+    private MetricasConsultas metricasConsultas;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        long inicio = System.nanoTime();
+        try {
+            context.proceed();
+        } finally {
+            metricasConsultas.registrarSerializacion(metodo(), inicio);
+        }
+    }
+
+    private String metodo() {
+        Method metodo = resourceInfo != null ? resourceInfo.getResourceMethod() : null;
+        return metodo != null ? metodo.getName() : "desconocido";
+    }
+}
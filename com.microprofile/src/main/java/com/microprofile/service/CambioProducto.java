@@ -0,0 +1,55 @@
+package com.microprofile.service;
+
+import com.microprofile.data.Producto;
+
+// Cambio ya confirmado en la base de datos. ProductoService lo publica como evento CDI
+// y DifusorCambios lo reenvía a los clientes suscritos.
+public final class CambioProducto {
+
+    public enum Tipo {
+        CREADO,
+        ACTUALIZADO,
+        ELIMINADO,
+        // Demasiados cambios de golpe: el cliente debe volver a cargar el listado
+        RECARGAR
+    }
+
+    private final Tipo tipo;
+    private final int id;
+    private final Producto producto;
+
+    private CambioProducto(Tipo tipo, int id, Producto producto) {
+        this.tipo = tipo;
+        this.id = id;
+        this.producto = producto;
+    }
+
+    public static CambioProducto creado(Producto producto) {
+        return new CambioProducto(Tipo.CREADO, producto.getId(), producto);
+    }
+
+    public static CambioProducto actualizado(int id) {
+        return new CambioProducto(Tipo.ACTUALIZADO, id, null);
+    }
+
+    public static CambioProducto eliminado(int id) {
+        return new CambioProducto(Tipo.ELIMINADO, id, null);
+    }
+
+    public static CambioProducto recargar() {
+        return new CambioProducto(Tipo.RECARGAR, 0, null);
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // Solo en CREADO; en las actualizaciones el cliente pide el producto si lo necesita
+    public Producto getProducto() {
+        return producto;
+    }
+}
@@ -0,0 +1,688 @@
+package com.microprofile.service;
+
+import com.microprofile.data.FiltroProductos;
+import com.microprofile.data.ProcesadorProducto;
+import com.microprofile.data.Producto;
+import com.microprofile.data.ProductoDAO;
+import com.microprofile.data.Proyeccion;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+// Copia completa de la tabla productos en memoria, por columnas en arrays primitivos: id, precio en
+// céntimos, cantidad y fecha en milisegundos, y los textos compartidos entre filas iguales. Las filas
+// están ordenadas por id, que sirve de índice con búsqueda binaria; los borrados se marcan y se
+// compactan cuando son muchos. Se carga al arrancar y los CambioProducto se aplican en un hilo propio,
+// releyendo la fila de la base principal cuando el evento no la trae, para no alargar las escrituras.
+// Mientras no está listo o quedan cambios por aplicar, ProductoService consulta la base de datos.
+@ApplicationScoped
+public class CatalogoMemoria {
+
+    private static final Logger LOGGER = Logger.getLogger(CatalogoMemoria.class.getName());
+
+    private static final long SIN_PRECIO = Long.MIN_VALUE;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+    private static final int SIN_VERSION = Integer.MIN_VALUE;
+    // Filas copiadas por vuelta al recorrer, para no retener el lock mientras se escribe la respuesta
+    private static final int BLOQUE_RECORRIDO = 1024;
+
+    @Inject
+    @ConfigProperty(name = "productos.catalogo.memoria.habilitado", defaultValue = "false")
+    private boolean habilitado;
+
+    // Espera antes de reintentar una carga fallida (p. ej. base de datos aún no disponible)
+    @Inject
+    @ConfigProperty(name = "productos.catalogo.memoria.reintentoSegundos", defaultValue = "30")
+    private int reintentoSegundos;
+
+    @Inject
+    private ProductoDAO productoDAO;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean cargando = new AtomicBoolean();
+    // Un solo hilo aplica los cambios en el orden en que se publicaron, así una relectura antigua
+    // no pisa una más nueva
+    private final ConcurrentLinkedQueue<CambioProducto> porAplicar = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sinAplicar = new AtomicInteger();
+    private final AtomicBoolean aplicando = new AtomicBoolean();
+    private volatile boolean cargaPedida;
+    private Columnas actual = new Columnas();
+    private boolean listo;
+    // IDs cambiados durante una carga; se releen antes de publicar las columnas nuevas
+    private Set<Integer> pendientes;
+
+    void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        if (!habilitado) {
+            return;
+        }
+        metricRegistry.gauge(Metadata.builder()
+                .withName("productos.catalogo.filas")
+                .withDescription("Productos en el catálogo en memoria")
+                .withType(MetricType.GAUGE)
+                .build(), this::filas);
+        pedirCarga();
+    }
+
+    // Con cambios publicados aún sin aplicar las columnas van por detrás de la base de datos
+    public boolean listo() {
+        if (sinAplicar.get() > 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return listo;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int filas() {
+        lock.readLock().lock();
+        try {
+            return actual.filas - actual.borradas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Producto> obtener(int id) {
+        lock.readLock().lock();
+        try {
+            int fila = actual.fila(id);
+            return fila < 0 ? Optional.empty() : Optional.of(actual.producto(fila, Proyeccion.TODOS));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Los que no existen no aparecen, como en ProductoDAO.obtenerPorIds
+    public Map<Integer, Producto> obtenerPorIds(Collection<Integer> ids) {
+        Map<Integer, Producto> productos = new HashMap<>(ids.size() * 2);
+        lock.readLock().lock();
+        try {
+            for (int id : ids) {
+                int fila = actual.fila(id);
+                if (fila >= 0) {
+                    productos.put(id, actual.producto(fila, Proyeccion.TODOS));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return productos;
+    }
+
+    public List<Producto> todos() {
+        lock.readLock().lock();
+        try {
+            List<Producto> productos = new ArrayList<>(actual.filas - actual.borradas);
+            for (int fila = 0; fila < actual.filas; fila++) {
+                if (!actual.borrada[fila]) {
+                    productos.add(actual.producto(fila, Proyeccion.TODOS));
+                }
+            }
+            return productos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Producto> pagina(int despuesDeId, int limite, Proyeccion proyeccion) {
+        return buscar(new FiltroProductos(), despuesDeId, limite, proyeccion);
+    }
+
+    // Mismos criterios y cursor que ProductoDAO.buscar; nombre se compara sin distinguir mayúsculas, como la
+    // intercalación por defecto de SQL Server, y los nulos van primero en orden ascendente
+    public List<Producto> buscar(FiltroProductos filtro, Integer despuesDeId, int limite, Proyeccion proyeccion) {
+        Criterios criterios = new Criterios(filtro);
+        boolean descendente = filtro.isDescendente();
+        lock.readLock().lock();
+        try {
+            Columnas columnas = actual;
+            if (filtro.getOrden() == FiltroProductos.Orden.ID) {
+                List<Producto> productos = new ArrayList<>(Math.min(limite, 1024));
+                int desde = despuesDeId == null ? (descendente ? columnas.filas - 1 : 0)
+                        : columnas.posicionTras(despuesDeId, descendente);
+                for (int fila = desde; fila >= 0 && fila < columnas.filas && productos.size() < limite;
+                     fila += descendente ? -1 : 1) {
+                    if (!columnas.borrada[fila] && criterios.cumple(columnas, fila)) {
+                        productos.add(columnas.producto(fila, proyeccion));
+                    }
+                }
+                return productos;
+            }
+
+            // Las limite mejores filas en un montículo cuya cabeza es la peor de ellas
+            Comparator<Integer> orden = columnas.orden(filtro.getOrden());
+            if (descendente) {
+                orden = orden.reversed();
+            }
+            PriorityQueue<Integer> mejores = new PriorityQueue<>(Math.min(limite, 1024) + 1, orden.reversed());
+            for (int fila = 0; fila < columnas.filas; fila++) {
+                if (columnas.borrada[fila] || !criterios.cumple(columnas, fila)) {
+                    continue;
+                }
+                if (despuesDeId != null) {
+                    int comparacion = columnas.compararConCursor(fila, filtro.getOrden(), filtro.getValorCursor(), despuesDeId);
+                    if (descendente ? comparacion >= 0 : comparacion <= 0) {
+                        continue;
+                    }
+                }
+                mejores.add(fila);
+                if (mejores.size() > limite) {
+                    mejores.poll();
+                }
+            }
+            Integer[] filas = mejores.toArray(new Integer[0]);
+            Arrays.sort(filas, orden);
+            List<Producto> productos = new ArrayList<>(filas.length);
+            for (int fila : filas) {
+                productos.add(columnas.producto(fila, proyeccion));
+            }
+            return productos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Por bloques: el lock se suelta mientras el procesador escribe cada bloque
+    public int recorrer(ProcesadorProducto procesador, Proyeccion proyeccion) throws IOException {
+        int total = 0;
+        int despuesDeId = Integer.MIN_VALUE;
+        while (true) {
+            List<Producto> bloque = pagina(despuesDeId, BLOQUE_RECORRIDO, proyeccion);
+            for (Producto producto : bloque) {
+                procesador.procesar(producto);
+            }
+            total += bloque.size();
+            if (bloque.size() < BLOQUE_RECORRIDO) {
+                return total;
+            }
+            despuesDeId = bloque.get(bloque.size() - 1).getId();
+        }
+    }
+
+    void alCambiar(@Observes CambioProducto cambio) {
+        if (!habilitado) {
+            return;
+        }
+        if (cambio.getTipo() == CambioProducto.Tipo.RECARGAR) {
+            pedirCarga();
+            return;
+        }
+        // Se cuenta antes de encolar para que listo() deje de servir desde memoria en cuanto vuelve el fire()
+        sinAplicar.incrementAndGet();
+        porAplicar.add(cambio);
+        if (aplicando.compareAndSet(false, true)) {
+            Thread aplicador = new Thread(this::aplicarCambios, "catalogo-memoria-cambios");
+            aplicador.setDaemon(true);
+            aplicador.start();
+        }
+    }
+
+    private void aplicarCambios() {
+        do {
+            CambioProducto cambio;
+            while ((cambio = porAplicar.poll()) != null) {
+                try {
+                    aplicarCambio(cambio);
+                } finally {
+                    sinAplicar.decrementAndGet();
+                }
+            }
+            aplicando.set(false);
+        } while (!porAplicar.isEmpty() && aplicando.compareAndSet(false, true));
+    }
+
+    private void aplicarCambio(CambioProducto cambio) {
+        int id = cambio.getId();
+        try {
+            Producto producto;
+            if (cambio.getTipo() == CambioProducto.Tipo.ELIMINADO) {
+                producto = null;
+            } else if (cambio.getTipo() == CambioProducto.Tipo.CREADO && cambio.getProducto().getFechaCreacion() != null) {
+                // Recién leído tras insertarlo; los lotes no traen la fecha y se releen
+                producto = cambio.getProducto();
+            } else {
+                producto = productoDAO.obtenerPorIdEnPrincipal(id).orElse(null);
+            }
+            aplicar(id, producto);
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "No se pudo releer el producto " + id + " para el catálogo en memoria, se recarga entero: "
+                    + e.getMessage(), e);
+            pedirCarga();
+        }
+    }
+
+    // Sobre las columnas publicadas; si hay una carga en curso queda anotado para releerlo al final
+    private void aplicar(int id, Producto producto) {
+        lock.writeLock().lock();
+        try {
+            if (producto != null) {
+                actual.poner(producto);
+            } else {
+                actual.quitar(id);
+            }
+            if (pendientes != null) {
+                pendientes.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Deja de servir lecturas hasta terminar: tras un RECARGAR las columnas actuales ya no valen
+    private void pedirCarga() {
+        lock.writeLock().lock();
+        try {
+            listo = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        cargaPedida = true;
+        if (cargando.compareAndSet(false, true)) {
+            Thread cargador = new Thread(this::cargar, "catalogo-memoria");
+            cargador.setDaemon(true);
+            cargador.start();
+        }
+    }
+
+    private void cargar() {
+        do {
+            while (cargaPedida) {
+                cargaPedida = false;
+                if (!cargarTabla()) {
+                    try {
+                        TimeUnit.SECONDS.sleep(reintentoSegundos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cargando.set(false);
+                        return;
+                    }
+                    cargaPedida = true;
+                }
+            }
+            cargando.set(false);
+        } while (cargaPedida && cargando.compareAndSet(false, true));
+    }
+
+    private boolean cargarTabla() {
+        lock.writeLock().lock();
+        try {
+            pendientes = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long inicio = System.nanoTime();
+        Columnas nueva = new Columnas();
+        try {
+            // De la principal: una réplica retrasada dejaría filas antiguas hasta que volvieran a cambiar
+            productoDAO.recorrerTodosEnPrincipal(nueva::poner, Proyeccion.TODOS);
+            while (true) {
+                Set<Integer> cambiados;
+                lock.writeLock().lock();
+                try {
+                    cambiados = pendientes;
+                    if (cambiados.isEmpty()) {
+                        pendientes = null;
+                        actual = nueva;
+                        listo = !cargaPedida;
+                        break;
+                    }
+                    pendientes = new HashSet<>();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                Map<Integer, Producto> leidos = productoDAO.obtenerPorIdsEnPrincipal(cambiados);
+                for (int id : cambiados) {
+                    Producto producto = leidos.get(id);
+                    if (producto != null) {
+                        nueva.poner(producto);
+                    } else {
+                        nueva.quitar(id);
+                    }
+                }
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error al cargar el catálogo en memoria, se reintentará en " + reintentoSegundos
+                    + " s: " + e.getMessage(), e);
+            lock.writeLock().lock();
+            try {
+                pendientes = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return false;
+        }
+        LOGGER.info("Catálogo en memoria cargado con " + (nueva.filas - nueva.borradas) + " productos en "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) + " ms");
+        return true;
+    }
+
+    // Límites del filtro ya convertidos a las unidades de las columnas
+    private static final class Criterios {
+        private final long precioMinimo;
+        private final long precioMaximo;
+        private final int cantidadMinima;
+        private final int cantidadMaxima;
+        private final long creadoDesde;
+        private final long creadoHasta;
+        private final String prefijo;
+        private final String contiene;
+        private final boolean filtraPrecio;
+        private final boolean filtraFecha;
+
+        private Criterios(FiltroProductos filtro) {
+            precioMinimo = filtro.getPrecioMinimo() != null ? centimos(filtro.getPrecioMinimo(), RoundingMode.CEILING) : Long.MIN_VALUE;
+            precioMaximo = filtro.getPrecioMaximo() != null ? centimos(filtro.getPrecioMaximo(), RoundingMode.FLOOR) : Long.MAX_VALUE;
+            cantidadMinima = filtro.getCantidadMinima() != null ? filtro.getCantidadMinima() : Integer.MIN_VALUE;
+            cantidadMaxima = filtro.getCantidadMaxima() != null ? filtro.getCantidadMaxima() : Integer.MAX_VALUE;
+            creadoDesde = filtro.getCreadoDesde() != null ? milisegundos(filtro.getCreadoDesde()) : Long.MIN_VALUE;
+            creadoHasta = filtro.getCreadoHasta() != null ? milisegundos(filtro.getCreadoHasta()) : Long.MAX_VALUE;
+            prefijo = filtro.getPrefijoNombre();
+            contiene = filtro.getNombreContiene();
+            filtraPrecio = filtro.getPrecioMinimo() != null || filtro.getPrecioMaximo() != null;
+            filtraFecha = filtro.getCreadoDesde() != null || filtro.getCreadoHasta() != null;
+        }
+
+        // Como en SQL, un nulo no cumple ninguna condición sobre su columna
+        private boolean cumple(Columnas columnas, int fila) {
+            int cantidad = columnas.cantidades[fila];
+            if (cantidad < cantidadMinima || cantidad > cantidadMaxima) {
+                return false;
+            }
+            if (filtraPrecio) {
+                long precio = columnas.precios[fila];
+                if (precio == SIN_PRECIO || precio < precioMinimo || precio > precioMaximo) {
+                    return false;
+                }
+            }
+            if (filtraFecha) {
+                long fecha = columnas.fechas[fila];
+                if (fecha == SIN_FECHA || fecha < creadoDesde || fecha > creadoHasta) {
+                    return false;
+                }
+            }
+            if (prefijo != null || contiene != null) {
+                String nombre = columnas.nombres[fila];
+                if (nombre == null) {
+                    return false;
+                }
+                if (prefijo != null && !nombre.regionMatches(true, 0, prefijo, 0, prefijo.length())) {
+                    return false;
+                }
+                return contiene == null || contieneSinMayusculas(nombre, contiene);
+            }
+            return true;
+        }
+
+        private static boolean contieneSinMayusculas(String texto, String buscado) {
+            for (int i = 0; i <= texto.length() - buscado.length(); i++) {
+                if (texto.regionMatches(true, i, buscado, 0, buscado.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static long centimos(BigDecimal importe, RoundingMode redondeo) {
+        BigDecimal centimos = importe.movePointRight(2).setScale(0, redondeo);
+        // Fuera de rango no hay fila que pueda cumplirlo; se satura sin llegar a los centinelas
+        return centimos.max(BigDecimal.valueOf(Long.MIN_VALUE + 1)).min(BigDecimal.valueOf(Long.MAX_VALUE)).longValue();
+    }
+
+    private static long milisegundos(LocalDateTime fecha) {
+        return fecha.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Sin sincronizar; el acceso lo protege el lock de CatalogoMemoria (o es local a una carga)
+    private static final class Columnas {
+        private int[] ids = new int[1024];
+        private String[] nombres = new String[1024];
+        private String[] descripciones = new String[1024];
+        private long[] precios = new long[1024];
+        private int[] cantidades = new int[1024];
+        private long[] fechas = new long[1024];
+        private int[] versiones = new int[1024];
+        private boolean[] borrada = new boolean[1024];
+        private int filas;
+        private int borradas;
+        // Una sola instancia por texto distinto: nombres y descripciones repetidos no ocupan más
+        private Map<String, String> textos = new HashMap<>();
+        // Textos que han dejado de usarse desde la última limpieza del mapa; pueden seguir en textos
+        private int textosSustituidos;
+
+        // Fila del producto o -1 si no está
+        private int fila(int id) {
+            int fila = Arrays.binarySearch(ids, 0, filas, id);
+            return fila >= 0 && !borrada[fila] ? fila : -1;
+        }
+
+        // Primera fila tras el cursor en el sentido del recorrido
+        private int posicionTras(int id, boolean descendente) {
+            int fila = Arrays.binarySearch(ids, 0, filas, id);
+            if (fila >= 0) {
+                return descendente ? fila - 1 : fila + 1;
+            }
+            int insercion = -fila - 1;
+            return descendente ? insercion - 1 : insercion;
+        }
+
+        private void poner(Producto producto) {
+            int id = producto.getId();
+            int fila = filas > 0 && id > ids[filas - 1] ? -filas - 1 : Arrays.binarySearch(ids, 0, filas, id);
+            if (fila < 0) {
+                fila = -fila - 1;
+                insertarHueco(fila);
+                ids[fila] = id;
+            } else if (borrada[fila]) {
+                borrada[fila] = false;
+                borradas--;
+            } else {
+                textosSustituidos += 2;
+            }
+            nombres[fila] = texto(producto.getNombre());
+            descripciones[fila] = texto(producto.getDescripcion());
+            precios[fila] = producto.getPrecio() != null ? centimos(producto.getPrecio(), RoundingMode.HALF_UP) : SIN_PRECIO;
+            cantidades[fila] = producto.getCantidad();
+            fechas[fila] = producto.getFechaCreacion() != null ? milisegundos(producto.getFechaCreacion()) : SIN_FECHA;
+            versiones[fila] = producto.getVersion() != null ? producto.getVersion() : SIN_VERSION;
+            if (textosSustituidos > 1024 && textosSustituidos > textos.size()) {
+                limpiarTextos();
+            }
+        }
+
+        private void quitar(int id) {
+            int fila = fila(id);
+            if (fila < 0) {
+                return;
+            }
+            borrada[fila] = true;
+            nombres[fila] = null;
+            descripciones[fila] = null;
+            borradas++;
+            textosSustituidos += 2;
+            if (borradas > 1024 && borradas > filas / 4) {
+                compactar();
+            }
+        }
+
+        // Los IDs nuevos suelen ser los mayores y caen al final, sin desplazar nada
+        private void insertarHueco(int fila) {
+            if (filas == ids.length) {
+                int capacidad = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacidad);
+                nombres = Arrays.copyOf(nombres, capacidad);
+                descripciones = Arrays.copyOf(descripciones, capacidad);
+                precios = Arrays.copyOf(precios, capacidad);
+                cantidades = Arrays.copyOf(cantidades, capacidad);
+                fechas = Arrays.copyOf(fechas, capacidad);
+                versiones = Arrays.copyOf(versiones, capacidad);
+                borrada = Arrays.copyOf(borrada, capacidad);
+            }
+            int mover = filas - fila;
+            if (mover > 0) {
+                System.arraycopy(ids, fila, ids, fila + 1, mover);
+                System.arraycopy(nombres, fila, nombres, fila + 1, mover);
+                System.arraycopy(descripciones, fila, descripciones, fila + 1, mover);
+                System.arraycopy(precios, fila, precios, fila + 1, mover);
+                System.arraycopy(cantidades, fila, cantidades, fila + 1, mover);
+                System.arraycopy(fechas, fila, fechas, fila + 1, mover);
+                System.arraycopy(versiones, fila, versiones, fila + 1, mover);
+                System.arraycopy(borrada, fila, borrada, fila + 1, mover);
+            }
+            borrada[fila] = false;
+            filas++;
+        }
+
+        // Quita las filas borradas y los textos que ya no usa ninguna fila
+        private void compactar() {
+            Map<String, String> vivos = new HashMap<>();
+            int destino = 0;
+            for (int fila = 0; fila < filas; fila++) {
+                if (borrada[fila]) {
+                    continue;
+                }
+                ids[destino] = ids[fila];
+                nombres[destino] = compartir(vivos, nombres[fila]);
+                descripciones[destino] = compartir(vivos, descripciones[fila]);
+                precios[destino] = precios[fila];
+                cantidades[destino] = cantidades[fila];
+                fechas[destino] = fechas[fila];
+                versiones[destino] = versiones[fila];
+                borrada[destino] = false;
+                destino++;
+            }
+            Arrays.fill(nombres, destino, filas, null);
+            Arrays.fill(descripciones, destino, filas, null);
+            filas = destino;
+            borradas = 0;
+            textos = vivos;
+            textosSustituidos = 0;
+        }
+
+        // Tras muchas actualizaciones, deja en el mapa solo los textos de las filas actuales
+        private void limpiarTextos() {
+            Map<String, String> vivos = new HashMap<>();
+            for (int fila = 0; fila < filas; fila++) {
+                if (!borrada[fila]) {
+                    compartir(vivos, nombres[fila]);
+                    compartir(vivos, descripciones[fila]);
+                }
+            }
+            textos = vivos;
+            textosSustituidos = 0;
+        }
+
+        private String texto(String texto) {
+            return compartir(textos, texto);
+        }
+
+        private static String compartir(Map<String, String> textos, String texto) {
+            if (texto == null) {
+                return null;
+            }
+            String existente = textos.putIfAbsent(texto, texto);
+            return existente != null ? existente : texto;
+        }
+
+        // Orden por la columna y después por id, como el ORDER BY de ProductoDAO.buscar
+        private Comparator<Integer> orden(FiltroProductos.Orden orden) {
+            Comparator<Integer> porColumna;
+            switch (orden) {
+                case NOMBRE:
+                    porColumna = Comparator.comparing(fila -> nombres[fila], Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+                    break;
+                case PRECIO:
+                    porColumna = Comparator.comparingLong(fila -> precios[fila]);
+                    break;
+                case CANTIDAD:
+                    porColumna = Comparator.comparingInt(fila -> cantidades[fila]);
+                    break;
+                case FECHA_CREACION:
+                    porColumna = Comparator.comparingLong(fila -> fechas[fila]);
+                    break;
+                default:
+                    porColumna = (a, b) -> 0;
+                    break;
+            }
+            return porColumna.thenComparingInt(fila -> ids[fila]);
+        }
+
+        // La fila frente al cursor (valor de orden, id) de ProductoDAO.buscar, en el orden ascendente de orden()
+        private int compararConCursor(int fila, FiltroProductos.Orden orden, Object valor, int id) {
+            int comparacion;
+            switch (orden) {
+                case NOMBRE:
+                    comparacion = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER).compare(nombres[fila], (String) valor);
+                    break;
+                case PRECIO:
+                    comparacion = Long.compare(precios[fila],
+                            valor != null ? centimos((BigDecimal) valor, RoundingMode.HALF_UP) : SIN_PRECIO);
+                    break;
+                case CANTIDAD:
+                    comparacion = Integer.compare(cantidades[fila], valor != null ? (Integer) valor : Integer.MIN_VALUE);
+                    break;
+                case FECHA_CREACION:
+                    comparacion = Long.compare(fechas[fila], valor != null ? milisegundos((LocalDateTime) valor) : SIN_FECHA);
+                    break;
+                default:
+                    comparacion = 0;
+                    break;
+            }
+            return comparacion != 0 ? comparacion : Integer.compare(ids[fila], id);
+        }
+
+        // Las columnas que no están en la proyección quedan a null (o 0 en cantidad), como en ProductoDAO
+        private Producto producto(int fila, Proyeccion proyeccion) {
+            long precio = precios[fila];
+            long fecha = fechas[fila];
+            Producto producto = new Producto(ids[fila],
+                    proyeccion.incluye(Proyeccion.NOMBRE) ? nombres[fila] : null,
+                    proyeccion.incluye(Proyeccion.DESCRIPCION) ? descripciones[fila] : null,
+                    proyeccion.incluye(Proyeccion.PRECIO) && precio != SIN_PRECIO ? BigDecimal.valueOf(precio, 2) : null,
+                    proyeccion.incluye(Proyeccion.CANTIDAD) ? cantidades[fila] : 0,
+                    proyeccion.incluye(Proyeccion.FECHA_CREACION) && fecha != SIN_FECHA
+                            ? LocalDateTime.ofEpochSecond(Math.floorDiv(fecha, 1000), Math.floorMod(fecha, 1000) * 1_000_000, ZoneOffset.UTC)
+                            : null);
+            if (versiones[fila] != SIN_VERSION) {
+                producto.setVersion(versiones[fila]);
+            }
+            return producto;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.microprofile.service;
+
+import com.microprofile.data.Producto;
+import com.microprofile.data.ProductoDAO;
+import com.microprofile.data.Proyeccion;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+// Índice invertido en memoria sobre nombre y descripción. Se construye al arrancar recorriendo
+// la tabla y ProductoService lo mantiene al día en cada escritura.
+@ApplicationScoped
+public class IndiceBusqueda {
+
+    private static final Logger LOGGER = Logger.getLogger(IndiceBusqueda.class.getName());
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Peso de cada aparición del término según el campo
+    private static final int PESO_NOMBRE = 3;
+    private static final int PESO_DESCRIPCION = 1;
+    // Términos más cortos solo se buscan exactos para no recorrer medio índice
+    private static final int LONGITUD_MINIMA_PREFIJO = 2;
+
+    @Inject
+    @ConfigProperty(name = "productos.busqueda.habilitada", defaultValue = "true")
+    private boolean habilitada;
+
+    @Inject
+    private ProductoDAO productoDAO;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Indice actual = new Indice();
+    private boolean listo;
+    // Cambios recibidos mientras se reconstruye; se reaplican sobre el índice nuevo
+    private List<Consumer<Indice>> pendientes;
+
+    void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        if (!habilitada) {
+            return;
+        }
+        metricRegistry.gauge(Metadata.builder()
+                .withName("productos.busqueda.documentos")
+                .withDescription("Productos presentes en el índice de búsqueda")
+                .withType(MetricType.GAUGE)
+                .build(), this::documentos);
+        Thread constructor = new Thread(this::reconstruir, "indice-busqueda");
+        constructor.setDaemon(true);
+        constructor.start();
+    }
+
+    // Falso mientras se construye por primera vez o si está deshabilitado
+    public boolean listo() {
+        lock.readLock().lock();
+        try {
+            return listo;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void reconstruir() {
+        lock.writeLock().lock();
+        try {
+            pendientes = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Indice nuevo = new Indice();
+        long inicio = System.nanoTime();
+        try {
+            productoDAO.recorrerTodos(nuevo::agregar, Proyeccion.de(Proyeccion.NOMBRE | Proyeccion.DESCRIPCION));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error al construir el índice de búsqueda: " + e.getMessage(), e);
+            lock.writeLock().lock();
+            try {
+                pendientes = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendientes.forEach(cambio -> cambio.accept(nuevo));
+            pendientes = null;
+            actual = nuevo;
+            listo = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("Índice de búsqueda construido con " + nuevo.documentos.size() + " productos en "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+
+    public void guardar(Producto producto) {
+        String nombre = producto.getNombre();
+        String descripcion = producto.getDescripcion();
+        int id = producto.getId();
+        aplicar(indice -> indice.agregar(id, nombre, descripcion));
+    }
+
+    // Solo afecta a productos ya indexados; en la parcial los campos nulos conservan sus términos
+    public void actualizar(int id, String nombre, String descripcion, boolean parcial) {
+        aplicar(indice -> {
+            Documento anterior = indice.documentos.get(id);
+            if (anterior != null) {
+                indice.agregar(id, parcial && nombre == null ? anterior.nombre : nombre,
+                        parcial && descripcion == null ? anterior.descripcion : descripcion);
+            }
+        });
+    }
+
+    public void eliminar(int id) {
+        aplicar(indice -> indice.quitar(id));
+    }
+
+    // IDs ordenados por relevancia; todos los términos de la consulta deben aparecer (como prefijo)
+    public List<Integer> buscar(String consulta, int limite) {
+        List<String> terminos = new ArrayList<>(new LinkedHashSet<>(tokenizar(consulta)));
+        if (terminos.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> puntuaciones = null;
+            for (String termino : terminos) {
+                Map<Integer, Integer> coincidencias = actual.coincidencias(termino);
+                if (puntuaciones == null) {
+                    puntuaciones = coincidencias;
+                } else {
+                    Map<Integer, Integer> anteriores = puntuaciones;
+                    coincidencias.keySet().retainAll(anteriores.keySet());
+                    coincidencias.replaceAll((id, puntos) -> puntos + anteriores.get(id));
+                    puntuaciones = coincidencias;
+                }
+                if (puntuaciones.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            List<Map.Entry<Integer, Integer>> resultado = new ArrayList<>(puntuaciones.entrySet());
+            resultado.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            List<Integer> ids = new ArrayList<>(Math.min(limite, resultado.size()));
+            for (int i = 0; i < resultado.size() && i < limite; i++) {
+                ids.add(resultado.get(i).getKey());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentos() {
+        lock.readLock().lock();
+        try {
+            return actual.documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void aplicar(Consumer<Indice> cambio) {
+        if (!habilitada) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            cambio.accept(actual);
+            if (pendientes != null) {
+                pendientes.add(cambio);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Minúsculas sin tildes ni diéresis: "Cañón Eléctrico" -> [canon, electrico]
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String plano = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        List<String> terminos = new ArrayList<>();
+        for (String termino : SEPARADORES.split(plano.toLowerCase(Locale.ROOT))) {
+            if (!termino.isEmpty()) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+
+    private static final class Documento {
+        private final String nombre;
+        private final String descripcion;
+        private final Set<String> terminos;
+
+        private Documento(String nombre, String descripcion, Set<String> terminos) {
+            this.nombre = nombre;
+            this.descripcion = descripcion;
+            this.terminos = terminos;
+        }
+    }
+
+    // Estructuras sin sincronizar; el acceso lo protege el lock de IndiceBusqueda
+    private static final class Indice {
+        private final Map<Integer, Documento> documentos = new HashMap<>();
+        // Término -> (ID -> peso), ordenado para resolver prefijos con un subMap
+        private final TreeMap<String, Map<Integer, Integer>> terminos = new TreeMap<>();
+
+        private void agregar(Producto producto) {
+            agregar(producto.getId(), producto.getNombre(), producto.getDescripcion());
+        }
+
+        private void agregar(int id, String nombre, String descripcion) {
+            quitar(id);
+            Map<String, Integer> pesos = new HashMap<>();
+            tokenizar(nombre).forEach(termino -> pesos.merge(termino, PESO_NOMBRE, Integer::sum));
+            tokenizar(descripcion).forEach(termino -> pesos.merge(termino, PESO_DESCRIPCION, Integer::sum));
+            pesos.forEach((termino, peso) -> terminos.computeIfAbsent(termino, t -> new HashMap<>(4)).put(id, peso));
+            documentos.put(id, new Documento(nombre, descripcion, pesos.keySet()));
+        }
+
+        private void quitar(int id) {
+            Documento documento = documentos.remove(id);
+            if (documento == null) {
+                return;
+            }
+            for (String termino : documento.terminos) {
+                Map<Integer, Integer> ids = terminos.get(termino);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        terminos.remove(termino);
+                    }
+                }
+            }
+        }
+
+        // Mejor puntuación de cada producto para el término; la coincidencia exacta vale el doble
+        private Map<Integer, Integer> coincidencias(String termino) {
+            Map<Integer, Integer> puntuaciones = new HashMap<>();
+            Map<String, Map<Integer, Integer>> candidatos = termino.length() < LONGITUD_MINIMA_PREFIJO
+                    ? terminos.subMap(termino, true, termino, true)
+                    : terminos.subMap(termino, true, termino + Character.MAX_VALUE, false);
+            candidatos.forEach((candidato, ids) -> {
+                int factor = candidato.equals(termino) ? 2 : 1;
+                ids.forEach((id, peso) -> puntuaciones.merge(id, peso * factor, Math::max));
+            });
+            return puntuaciones;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.microprofile.service;
+
+import com.microprofile.data.Producto;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+// Caché LRU acotada de productos por ID con expiración por tiempo. Se reparte en segmentos con su
+// propio lock y su propio LRU para que las lecturas de IDs distintos no se bloqueen entre sí.
+// Guarda copias y entrega copias: quien recibe un producto puede modificarlo sin afectar a otros.
+@ApplicationScoped
+public class ProductoCache {
+
+    private static final int SEGMENTOS = 16;
+
+    @Inject
+    @ConfigProperty(name = "productos.cache.habilitado", defaultValue = "true")
+    private boolean habilitado;
+
+    @Inject
+    @ConfigProperty(name = "productos.cache.tamanoMaximo", defaultValue = "10000")
+    private int tamanoMaximo;
+
+    @Inject
+    @ConfigProperty(name = "productos.cache.ttlSegundos", defaultValue = "60")
+    private long ttlSegundos;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final Segmento[] segmentos = new Segmento[SEGMENTOS];
+    private long ttlNanos;
+    // Se incrementa en cada invalidación; evita guardar lecturas que empezaron antes de una escritura
+    private final AtomicLong generacion = new AtomicLong();
+
+    private Counter aciertos;
+    private Counter fallos;
+    private Counter desalojos;
+    private Counter obsoletas;
+
+    @PostConstruct
+    void inicializar() {
+        ttlNanos = TimeUnit.SECONDS.toNanos(ttlSegundos);
+        // El máximo se reparte entre los segmentos; el total puede quedar algo por encima por redondeo
+        int maximoSegmento = Math.max(1, (tamanoMaximo + SEGMENTOS - 1) / SEGMENTOS);
+        for (int i = 0; i < SEGMENTOS; i++) {
+            segmentos[i] = new Segmento(maximoSegmento);
+        }
+        aciertos = metricRegistry.counter(metadata("productos.cache.aciertos", "Lecturas servidas desde la caché", MetricType.COUNTER));
+        fallos = metricRegistry.counter(metadata("productos.cache.fallos", "Lecturas que tuvieron que ir a la base de datos", MetricType.COUNTER));
+        desalojos = metricRegistry.counter(metadata("productos.cache.desalojos", "Entradas desalojadas por tamaño", MetricType.COUNTER));
+        obsoletas = metricRegistry.counter(metadata("productos.cache.lecturasObsoletas", "Lecturas servidas con entradas expiradas por no estar disponible la base de datos", MetricType.COUNTER));
+        metricRegistry.gauge(metadata("productos.cache.tamano", "Entradas actualmente en la caché", MetricType.GAUGE), this::tamano);
+    }
+
+    public Producto obtener(int id) {
+        if (!habilitado) {
+            return null;
+        }
+        // Las entradas expiradas se conservan hasta que se reemplazan o las desaloja el LRU,
+        // para poder servirlas con obtenerObsoleto si la base de datos no responde
+        Entrada entrada = segmento(id).buscar(id);
+        if (entrada != null && entrada.expira - System.nanoTime() > 0) {
+            aciertos.inc();
+            return new Producto(entrada.producto);
+        }
+        fallos.inc();
+        return null;
+    }
+
+    // Última copia conocida aunque haya expirado; las invalidaciones por escritura sí la eliminan
+    public Producto obtenerObsoleto(int id) {
+        if (!habilitado) {
+            return null;
+        }
+        Entrada entrada = segmento(id).buscar(id);
+        if (entrada == null) {
+            return null;
+        }
+        obsoletas.inc();
+        return new Producto(entrada.producto);
+    }
+
+    // Marca a tomar antes de leer de la base de datos para pasarla a guardar()
+    public long marca() {
+        return generacion.get();
+    }
+
+    public void guardar(Producto producto) {
+        guardar(producto, -1);
+    }
+
+    // Guarda el producto salvo que haya habido una invalidación desde que se tomó la marca
+    public void guardar(Producto producto, long marca) {
+        if (!habilitado) {
+            return;
+        }
+        Entrada entrada = new Entrada(new Producto(producto), System.nanoTime() + ttlNanos);
+        int desalojadas = segmento(producto.getId()).poner(producto.getId(), entrada, marca);
+        if (desalojadas > 0) {
+            desalojos.inc(desalojadas);
+        }
+    }
+
+    // La generación sube antes de quitar la entrada: un guardar() concurrente o ve la nueva
+    // generación y se descarta, o pone su entrada antes y esta la quita
+    public void invalidar(int id) {
+        generacion.incrementAndGet();
+        segmento(id).quitar(id);
+    }
+
+    public int tamano() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.tamano();
+        }
+        return total;
+    }
+
+    private Segmento segmento(int id) {
+        // Mezcla los bits para que IDs consecutivos no caigan siempre en el mismo patrón de segmentos
+        int h = id * 0x9E3779B9;
+        return segmentos[(h ^ (h >>> 16)) & (SEGMENTOS - 1)];
+    }
+
+    private static Metadata metadata(String nombre, String descripcion, MetricType tipo) {
+        return Metadata.builder()
+                .withName(nombre)
+                .withDescription(descripcion)
+                .withType(tipo)
+                .build();
+    }
+
+    private final class Segmento {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Integer, Entrada> entradas = new LinkedHashMap<>(64, 0.75f, true);
+        private final int maximo;
+
+        private Segmento(int maximo) {
+            this.maximo = maximo;
+        }
+
+        private Entrada buscar(int id) {
+            lock.lock();
+            try {
+                return entradas.get(id);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Devuelve cuántas entradas se desalojaron por tamaño
+        private int poner(int id, Entrada entrada, long marca) {
+            lock.lock();
+            try {
+                if (marca >= 0 && marca != generacion.get()) {
+                    return 0;
+                }
+                entradas.put(id, entrada);
+                int desalojadas = 0;
+                Iterator<Map.Entry<Integer, Entrada>> iterador = entradas.entrySet().iterator();
+                while (entradas.size() > maximo && iterador.hasNext()) {
+                    iterador.next();
+                    iterador.remove();
+                    desalojadas++;
+                }
+                return desalojadas;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void quitar(int id) {
+            lock.lock();
+            try {
+                entradas.remove(id);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int tamano() {
+            lock.lock();
+            try {
+                return entradas.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Entrada {
+        private final Producto producto;
+        private final long expira;
+
+        private Entrada(Producto producto, long expira) {
+            this.producto = producto;
+            this.expira = expira;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.microprofile.service;
+
+import com.microprofile.data.Producto;
+import java.util.Optional;
+import jakarta.enterprise.context.Dependent;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.faulttolerance.ExecutionContext;
+import org.eclipse.microprofile.faulttolerance.FallbackHandler;
+
+// Si la lectura por ID no se pudo hacer (circuito abierto, bulkhead lleno o timeout) se devuelve
+// la última copia en caché aunque haya expirado; sin copia se propaga el fallo original.
+@Dependent
+public class ProductoObsoletoFallback implements FallbackHandler<Optional<Producto>> {
+
+    @Inject
+    private ProductoCache productoCache;
+
+    @Override
+    public Optional<Producto> handle(ExecutionContext context) {
+        int id = (Integer) context.getParameters()[0];
+        Producto obsoleto = productoCache.obtenerObsoleto(id);
+        if (obsoleto != null) {
+            return Optional.of(obsoleto);
+        }
+        // Solo se aplica a excepciones de tolerancia a fallos, que son RuntimeException
+        throw (RuntimeException) context.getFailure();
+    }
+}
@@ -1,54 +1,544 @@
 package com.microprofile.service;
 
+import com.microprofile.data.ConflictoVersionException;
+import com.microprofile.data.FilaInvalidaException;
+import com.microprofile.data.FiltroProductos;
+import com.microprofile.data.FuenteProductos;
+import com.microprofile.data.ProcesadorProducto;
 import com.microprofile.data.Producto;
 import com.microprofile.data.ProductoDAO;
+import com.microprofile.data.Proyeccion;
+import com.microprofile.data.ReglasProducto;
+import com.microprofile.data.StockInsuficienteException;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.logging.Logger;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
 import org.eclipse.microprofile.metrics.annotation.Counted;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 
+// Cada método tiene su propio circuito, bulkhead y timeout: una escritura lenta no agota la capacidad
+// de las lecturas. Los conflictos de versión, la falta de stock y los cortes del cliente no abren el
+// circuito. Los valores se pueden ajustar por configuración, p. ej.
+// com.microprofile.service.ProductoService/obtenerProducto/Timeout/value=1000
 @ApplicationScoped
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, successThreshold = 3,
+        skipOn = {ConflictoVersionException.class, StockInsuficienteException.class, IOException.class})
 public class ProductoService {
 
+    private static final Logger LOGGER = Logger.getLogger(ProductoService.class.getName());
+
+    private static final long TIMEOUT_LECTURA_MS = 2000;
+    private static final long TIMEOUT_ESCRITURA_MS = 5000;
+    private static final long TIMEOUT_LOTE_MS = 30000;
+    private static final int BULKHEAD_LECTURA = 16;
+    private static final int BULKHEAD_ESCRITURA = 8;
+    private static final int BULKHEAD_LOTE = 2;
+    // Listado completo en streaming: lo pide el panel en cada carga, no puede compartir tamaño con los lotes
+    private static final int BULKHEAD_LISTADO = 8;
+    // Las reservas son cortas y llegan en ráfagas
+    private static final int BULKHEAD_STOCK = 32;
+
     @Inject
     private ProductoDAO productoDAO;
 
+    @Inject
+    private ProductoCache productoCache;
+
+    @Inject
+    private VersionCatalogo versionCatalogo;
+
+    @Inject
+    private IndiceBusqueda indiceBusqueda;
+
+    @Inject
+    private CatalogoMemoria catalogoMemoria;
+
+    @Inject
+    private ReservasStock reservasStock;
+
+    @Inject
+    private Event<CambioProducto> cambios;
+
+    // Por encima de este tamaño un lote se anuncia con un único aviso de recarga
+    @Inject
+    @ConfigProperty(name = "productos.eventos.maxPorLote", defaultValue = "100")
+    private int maxEventosPorLote;
+
+    @Inject
+    @ConfigProperty(name = "productos.batch.tamanoLote", defaultValue = "500")
+    private int tamanoLote;
+
+    @Inject
+    @ConfigProperty(name = "productos.importacion.maxErrores", defaultValue = "100")
+    private int maxErroresImportacion;
+
+    // Lecturas por ID en curso: las peticiones simultáneas del mismo ID esperan a la primera
+    private final Map<Integer, CompletableFuture<Optional<Producto>>> enVuelo = new ConcurrentHashMap<>();
+
     @Counted(name = "productos.contadorCrear", description = "Número de productos creados")
     @Timed(name = "productos.tiempoCrear", description = "Tiempo para crear un producto")
+    @Timeout(TIMEOUT_ESCRITURA_MS)
+    @Bulkhead(BULKHEAD_ESCRITURA)
     public Producto crearProducto(Producto producto) throws SQLException {
-        return productoDAO.crear(producto);
+        try {
+            Producto nuevoProducto = productoDAO.crear(producto);
+            productoCache.guardar(nuevoProducto);
+            indiceBusqueda.guardar(nuevoProducto);
+            cambios.fire(CambioProducto.creado(nuevoProducto));
+            return nuevoProducto;
+        } finally {
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    @Counted(name = "productos.contadorCrearLote", description = "Número de lotes de productos creados")
+    @Timed(name = "productos.tiempoCrearLote", description = "Tiempo para crear un lote de productos")
+    @Timeout(TIMEOUT_LOTE_MS)
+    @Bulkhead(BULKHEAD_LOTE)
+    public List<Producto> crearProductos(List<Producto> productos) throws SQLException {
+        try {
+            List<Producto> nuevosProductos = productoDAO.crearLote(productos);
+            nuevosProductos.forEach(indiceBusqueda::guardar);
+            publicarLote(nuevosProductos, CambioProducto::creado);
+            return nuevosProductos;
+        } finally {
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    @Counted(name = "productos.contadorActualizarLote", description = "Número de lotes de productos actualizados")
+    @Timed(name = "productos.tiempoActualizarLote", description = "Tiempo para actualizar un lote de productos")
+    @Timeout(TIMEOUT_LOTE_MS)
+    @Bulkhead(BULKHEAD_LOTE)
+    public int actualizarProductos(List<Producto> productos) throws SQLException {
+        try {
+            int actualizados = productoDAO.actualizarLote(productos);
+            productos.forEach(p -> indiceBusqueda.actualizar(p.getId(), p.getNombre(), p.getDescripcion(), false));
+            publicarLote(productos, p -> CambioProducto.actualizado(p.getId()));
+            return actualizados;
+        } finally {
+            productos.forEach(producto -> {
+                reservasStock.retirar(producto.getId());
+                invalidar(producto.getId());
+            });
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    @Counted(name = "productos.contadorEliminarLote", description = "Número de lotes de productos eliminados")
+    @Timed(name = "productos.tiempoEliminarLote", description = "Tiempo para eliminar un lote de productos")
+    @Timeout(TIMEOUT_LOTE_MS)
+    @Bulkhead(BULKHEAD_LOTE)
+    public int eliminarProductos(List<Integer> ids) throws SQLException {
+        try {
+            int eliminados = productoDAO.eliminarLote(ids);
+            ids.forEach(indiceBusqueda::eliminar);
+            publicarLote(ids, CambioProducto::eliminado);
+            return eliminados;
+        } finally {
+            ids.forEach(id -> {
+                reservasStock.retirar(id);
+                invalidar(id);
+            });
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    // Lee la fuente por lotes de tamanoLote y confirma cada uno por separado: si se corta, lo ya
+    // confirmado se queda y el mensaje dice hasta dónde llegó. Un lote que falla por los datos se
+    // repite fila a fila para saber cuáles fallan. Las filas que no cumplen ReglasProducto se anotan
+    // como erróneas sin llegar a la base de datos. Sin timeout: dura lo que tarde en llegar el cuerpo.
+    @Counted(name = "productos.contadorImportar", description = "Número de importaciones de productos")
+    @Timed(name = "productos.tiempoImportar", description = "Tiempo para importar productos")
+    @Bulkhead(BULKHEAD_LOTE)
+    public ResultadoImportacion importarProductos(FuenteProductos fuente, boolean actualizarExistentes,
+                                                  ResultadoImportacion.Progreso progreso) throws SQLException, IOException {
+        ResultadoImportacion resultado = new ResultadoImportacion(maxErroresImportacion);
+        List<Producto> lote = new ArrayList<>(tamanoLote);
+        List<Integer> lineas = new ArrayList<>(tamanoLote);
+        long inicio = System.nanoTime();
+        try {
+            while (true) {
+                Producto producto;
+                try {
+                    producto = fuente.siguiente();
+                } catch (FilaInvalidaException e) {
+                    resultado.error(fuente.linea(), e.getMessage());
+                    continue;
+                }
+                if (producto == null) {
+                    break;
+                }
+                String error = ReglasProducto.error(producto);
+                if (error != null) {
+                    resultado.error(fuente.linea(), error);
+                    continue;
+                }
+                lote.add(producto);
+                lineas.add(fuente.linea());
+                if (lote.size() == tamanoLote) {
+                    importarLote(lote, lineas, actualizarExistentes, resultado);
+                    lote.clear();
+                    lineas.clear();
+                    progreso.avance(resultado);
+                }
+            }
+            if (!lote.isEmpty()) {
+                importarLote(lote, lineas, actualizarExistentes, resultado);
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Importación interrumpida en la línea " + fuente.linea() + " (" + resultado + "): "
+                    + e.getMessage(), e.getSQLState(), e);
+        } catch (IOException e) {
+            throw new IOException("Importación interrumpida en la línea " + fuente.linea() + " (" + resultado + "): "
+                    + e.getMessage(), e);
+        } finally {
+            // Un solo aviso: los clientes recargan en lugar de recibir un evento por fila
+            if (resultado.getCreados() + resultado.getActualizados() > 0) {
+                cambios.fire(CambioProducto.recargar());
+            }
+        }
+        LOGGER.info("Importación de " + resultado.getFilas() + " filas en "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms: " + resultado);
+        return resultado;
+    }
+
+    private void importarLote(List<Producto> lote, List<Integer> lineas, boolean actualizarExistentes,
+                              ResultadoImportacion resultado) throws SQLException {
+        try {
+            aplicarImportados(lote, productoDAO.importarLote(lote, actualizarExistentes), resultado);
+        } catch (SQLException e) {
+            if (!esErrorDeDatos(e)) {
+                throw e;
+            }
+            for (int i = 0; i < lote.size(); i++) {
+                List<Producto> fila = lote.subList(i, i + 1);
+                try {
+                    aplicarImportados(fila, productoDAO.importarLote(fila, actualizarExistentes), resultado);
+                } catch (SQLException errorFila) {
+                    if (!esErrorDeDatos(errorFila)) {
+                        throw errorFila;
+                    }
+                    resultado.error(lineas.get(i), errorFila.getMessage());
+                }
+            }
+        } finally {
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    private void aplicarImportados(List<Producto> productos, boolean[] existentes, ResultadoImportacion resultado) {
+        for (int i = 0; i < productos.size(); i++) {
+            Producto producto = productos.get(i);
+            if (existentes[i]) {
+                indiceBusqueda.actualizar(producto.getId(), producto.getNombre(), producto.getDescripcion(), false);
+                reservasStock.retirar(producto.getId());
+                invalidar(producto.getId());
+                resultado.actualizado();
+            } else {
+                indiceBusqueda.guardar(producto);
+                resultado.creado();
+            }
+        }
+    }
+
+    // SQLState de clase 22 (datos) o 23 (restricciones): la culpa es de alguna fila, no de la conexión
+    private static boolean esErrorDeDatos(SQLException error) {
+        for (SQLException actual = error; actual != null; actual = actual.getNextException()) {
+            String estado = actual.getSQLState();
+            if (estado != null && (estado.startsWith("22") || estado.startsWith("23"))) {
+                return true;
+            }
+        }
+        return error.getCause() instanceof SQLException && esErrorDeDatos((SQLException) error.getCause());
     }
 
     @Counted(name = "productos.contadorListar", description = "Número de veces que se ha listado productos")
     @Timed(name = "productos.tiempoListar", description = "Tiempo para listar todos los productos")
+    @Timeout(TIMEOUT_LOTE_MS)
+    @Bulkhead(BULKHEAD_LISTADO)
     public List<Producto> listarProductos() throws SQLException {
+        if (catalogoMemoria.listo()) {
+            return catalogoMemoria.todos();
+        }
         return productoDAO.obtenerTodos();
     }
 
+    @Counted(name = "productos.contadorListarPagina", description = "Número de páginas de productos consultadas")
+    @Timed(name = "productos.tiempoListarPagina", description = "Tiempo para obtener una página de productos")
+    @Timeout(TIMEOUT_LECTURA_MS)
+    @Bulkhead(BULKHEAD_LECTURA)
+    public List<Producto> listarPagina(int despuesDeId, int limite, Proyeccion proyeccion) throws SQLException {
+        if (catalogoMemoria.listo()) {
+            return catalogoMemoria.pagina(despuesDeId, limite, proyeccion);
+        }
+        return productoDAO.obtenerPagina(despuesDeId, limite, proyeccion);
+    }
+
+    @Counted(name = "productos.contadorBuscar", description = "Número de búsquedas de productos con filtros")
+    @Timed(name = "productos.tiempoBuscar", description = "Tiempo para buscar productos con filtros")
+    @Timeout(TIMEOUT_LECTURA_MS)
+    @Bulkhead(BULKHEAD_LECTURA)
+    public List<Producto> buscarProductos(FiltroProductos filtro, Integer despuesDeId, int limite, Proyeccion proyeccion) throws SQLException {
+        if (catalogoMemoria.listo()) {
+            return catalogoMemoria.buscar(filtro, despuesDeId, limite, proyeccion);
+        }
+        return productoDAO.buscar(filtro, despuesDeId, limite, proyeccion);
+    }
+
+    // Desde el índice en memoria; mientras se construye se recurre a LIKE sobre el nombre
+    @Counted(name = "productos.contadorBuscarTexto", description = "Número de búsquedas de texto")
+    @Timed(name = "productos.tiempoBuscarTexto", description = "Tiempo para buscar productos por texto")
+    @Timeout(TIMEOUT_LECTURA_MS)
+    @Bulkhead(BULKHEAD_LECTURA)
+    public List<Producto> buscarTexto(String consulta, int limite) throws SQLException {
+        if (!indiceBusqueda.listo()) {
+            FiltroProductos filtro = new FiltroProductos();
+            filtro.setNombreContiene(consulta.trim());
+            if (catalogoMemoria.listo()) {
+                return catalogoMemoria.buscar(filtro, null, limite, Proyeccion.TODOS);
+            }
+            return productoDAO.buscar(filtro, null, limite);
+        }
+
+        return buscarEnCache(indiceBusqueda.buscar(consulta, limite));
+    }
+
+    @Counted(name = "productos.contadorRecorrer", description = "Número de listados completos enviados en streaming")
+    @Timed(name = "productos.tiempoRecorrer", description = "Tiempo para enviar todos los productos en streaming")
+    @Bulkhead(BULKHEAD_LISTADO)
+    public int recorrerProductos(ProcesadorProducto procesador, Proyeccion proyeccion) throws SQLException, IOException {
+        if (catalogoMemoria.listo()) {
+            return catalogoMemoria.recorrer(procesador, proyeccion);
+        }
+        return productoDAO.recorrerTodos(procesador, proyeccion);
+    }
+
     @Counted(name = "productos.contadorObtener", description = "Número de consultas de producto por ID")
     @Timed(name = "productos.tiempoObtener", description = "Tiempo para obtener un producto por ID")
+    @Timeout(TIMEOUT_LECTURA_MS)
+    @Bulkhead(BULKHEAD_LECTURA)
+    @Fallback(value = ProductoObsoletoFallback.class,
+            applyOn = {CircuitBreakerOpenException.class, BulkheadException.class, TimeoutException.class})
     public Optional<Producto> obtenerProducto(int id) throws SQLException {
-        return productoDAO.obtenerPorId(id);
+        Producto cacheado = productoCache.obtener(id);
+        if (cacheado != null) {
+            return Optional.of(cacheado);
+        }
+
+        CompletableFuture<Optional<Producto>> lectura = new CompletableFuture<>();
+        CompletableFuture<Optional<Producto>> enCurso = enVuelo.putIfAbsent(id, lectura);
+        if (enCurso != null) {
+            return esperar(enCurso);
+        }
+
+        try {
+            long marca = productoCache.marca();
+            Optional<Producto> producto = catalogoMemoria.listo() ? catalogoMemoria.obtener(id) : productoDAO.obtenerPorId(id);
+            producto.ifPresent(p -> productoCache.guardar(p, marca));
+            lectura.complete(producto);
+            return producto;
+        } catch (SQLException | RuntimeException e) {
+            lectura.completeExceptionally(e);
+            throw e;
+        } finally {
+            enVuelo.remove(id, lectura);
+        }
+    }
+
+    // Sin caché ni réplicas: el estado confirmado en la base principal
+    @Timeout(TIMEOUT_LECTURA_MS)
+    @Bulkhead(BULKHEAD_LECTURA)
+    public Optional<Producto> obtenerProductoActual(int id) throws SQLException {
+        return productoDAO.obtenerPorIdEnPrincipal(id);
+    }
+
+    @Counted(name = "productos.contadorObtenerVarios", description = "Número de consultas de varios productos por ID")
+    @Timed(name = "productos.tiempoObtenerVarios", description = "Tiempo para obtener varios productos por ID")
+    @Timeout(TIMEOUT_LECTURA_MS)
+    @Bulkhead(BULKHEAD_LECTURA)
+    public List<Producto> obtenerProductos(List<Integer> ids) throws SQLException {
+        return buscarEnCache(ids);
+    }
+
+    // En el orden pedido, omitiendo los que no existen; los fallos de caché van en una sola consulta
+    private List<Producto> buscarEnCache(List<Integer> ids) throws SQLException {
+        Map<Integer, Producto> encontrados = new HashMap<>(ids.size() * 2);
+        List<Integer> fallos = new ArrayList<>();
+        for (int id : ids) {
+            Producto cacheado = productoCache.obtener(id);
+            if (cacheado != null) {
+                encontrados.put(id, cacheado);
+            } else {
+                fallos.add(id);
+            }
+        }
+
+        if (!fallos.isEmpty()) {
+            long marca = productoCache.marca();
+            Map<Integer, Producto> leidos = catalogoMemoria.listo() ? catalogoMemoria.obtenerPorIds(fallos) : productoDAO.obtenerPorIds(fallos);
+            for (Producto producto : leidos.values()) {
+                productoCache.guardar(producto, marca);
+                encontrados.put(producto.getId(), producto);
+            }
+        }
+
+        List<Producto> productos = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Producto producto = encontrados.get(id);
+            if (producto != null) {
+                productos.add(producto);
+            }
+        }
+        return productos;
+    }
+
+    private Optional<Producto> esperar(CompletableFuture<Optional<Producto>> lectura) throws SQLException {
+        try {
+            return lectura.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando la lectura del producto", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    // Un cambio por elemento, o uno de recarga si el lote es grande
+    private <T> void publicarLote(List<T> elementos, Function<T, CambioProducto> cambio) {
+        if (elementos.size() > maxEventosPorLote) {
+            cambios.fire(CambioProducto.recargar());
+            return;
+        }
+        for (T elemento : elementos) {
+            cambios.fire(cambio.apply(elemento));
+        }
+    }
+
+    // Una escritura descarta la lectura en curso para que las siguientes no reciban el valor anterior
+    private void invalidar(int id) {
+        productoCache.invalidar(id);
+        enVuelo.remove(id);
     }
 
     @Counted(name = "productos.contadorActualizar", description = "Número de productos actualizados")
     @Timed(name = "productos.tiempoActualizar", description = "Tiempo para actualizar un producto")
-    public boolean actualizarProducto(Producto producto) throws SQLException {
-        return productoDAO.actualizar(producto);
+    @Timeout(TIMEOUT_ESCRITURA_MS)
+    @Bulkhead(BULKHEAD_ESCRITURA)
+    public boolean actualizarProducto(Producto producto, Integer versionEsperada) throws SQLException {
+        try {
+            boolean actualizado = productoDAO.actualizar(producto, versionEsperada);
+            if (actualizado) {
+                indiceBusqueda.actualizar(producto.getId(), producto.getNombre(), producto.getDescripcion(), false);
+                cambios.fire(CambioProducto.actualizado(producto.getId()));
+            }
+            return actualizado;
+        } finally {
+            reservasStock.retirar(producto.getId());
+            invalidar(producto.getId());
+            versionCatalogo.registrarCambio();
+        }
     }
 
     @Counted(name = "productos.contadorActualizarParcial", description = "Número de productos actualizados parcialmente")
     @Timed(name = "productos.tiempoActualizarParcial", description = "Tiempo para actualizar parcialmente un producto")
-    public boolean actualizarProductoParcial(int id, Producto producto) throws SQLException {
-        return productoDAO.actualizarParcial(id, producto);
+    @Timeout(TIMEOUT_ESCRITURA_MS)
+    @Bulkhead(BULKHEAD_ESCRITURA)
+    public boolean actualizarProductoParcial(int id, Producto producto, Integer versionEsperada) throws SQLException {
+        try {
+            boolean actualizado = productoDAO.actualizarParcial(id, producto, versionEsperada);
+            if (actualizado) {
+                indiceBusqueda.actualizar(id, producto.getNombre(), producto.getDescripcion(), true);
+                cambios.fire(CambioProducto.actualizado(id));
+            }
+            return actualizado;
+        } finally {
+            reservasStock.retirar(id);
+            invalidar(id);
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    // Descuenta unidades solo si quedan suficientes; false si el producto no existe
+    @Counted(name = "productos.contadorReservarStock", description = "Número de reservas de stock")
+    @Timed(name = "productos.tiempoReservarStock", description = "Tiempo para reservar stock de un producto")
+    @Timeout(TIMEOUT_ESCRITURA_MS)
+    @Bulkhead(BULKHEAD_STOCK)
+    public boolean reservarStock(int id, int unidades) throws SQLException {
+        if (reservasStock.agrega(id)) {
+            return reservasStock.reservar(id, unidades);
+        }
+        try {
+            boolean reservado = productoDAO.reservarStock(id, unidades);
+            if (reservado) {
+                cambios.fire(CambioProducto.actualizado(id));
+            }
+            return reservado;
+        } finally {
+            invalidar(id);
+            versionCatalogo.registrarCambio();
+        }
+    }
+
+    @Counted(name = "productos.contadorLiberarStock", description = "Número de liberaciones de stock")
+    @Timed(name = "productos.tiempoLiberarStock", description = "Tiempo para liberar stock de un producto")
+    @Timeout(TIMEOUT_ESCRITURA_MS)
+    @Bulkhead(BULKHEAD_STOCK)
+    public boolean liberarStock(int id, int unidades) throws SQLException {
+        if (reservasStock.agrega(id)) {
+            return reservasStock.liberar(id, unidades);
+        }
+        try {
+            boolean liberado = productoDAO.liberarStock(id, unidades);
+            if (liberado) {
+                cambios.fire(CambioProducto.actualizado(id));
+            }
+            return liberado;
+        } finally {
+            invalidar(id);
+            versionCatalogo.registrarCambio();
+        }
     }
 
     @Counted(name = "productos.contadorEliminar", description = "Número de productos eliminados")
     @Timed(name = "productos.tiempoEliminar", description = "Tiempo para eliminar un producto")
+    @Timeout(TIMEOUT_ESCRITURA_MS)
+    @Bulkhead(BULKHEAD_ESCRITURA)
     public boolean eliminarProducto(int id) throws SQLException {
-        return productoDAO.eliminar(id);
+        try {
+            boolean eliminado = productoDAO.eliminar(id);
+            if (eliminado) {
+                indiceBusqueda.eliminar(id);
+                cambios.fire(CambioProducto.eliminado(id));
+            }
+            return eliminado;
+        } finally {
+            reservasStock.retirar(id);
+            invalidar(id);
+            versionCatalogo.registrarCambio();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,284 @@
+package com.microprofile.service;
+
+import com.microprofile.data.ProductoDAO;
+import com.microprofile.data.StockInsuficienteException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Reservas de stock en memoria para los productos más solicitados. Cada instancia arrienda unidades
+// a la base de datos por bloques de tamanoArriendo, con el mismo UPDATE condicional que una reserva
+// directa, y las reparte con CAS sin volver a la base hasta agotarlas. Como lo arrendado ya está
+// descontado en la fila, varias instancias nunca venden más de lo que hay y una caída no pierde
+// reservas: a lo sumo deja sin vender lo arrendado que no se usó. Lo que sobra (contadores sin uso
+// durante arriendoSegundos, o el exceso acumulado por liberaciones) se devuelve cada intervaloMs.
+// GET muestra la cantidad sin lo arrendado. Las escrituras de cantidad que no pasan por aquí (PUT,
+// PATCH, borrados) retiran el contador y lo que quedaba arrendado se devuelve como delta.
+@ApplicationScoped
+public class ReservasStock {
+
+    private static final Logger LOGGER = Logger.getLogger(ReservasStock.class.getName());
+
+    // Valor de un contador retirado: quien lo vea vuelve a pedir el del producto
+    private static final long RETIRADO = Long.MIN_VALUE;
+
+    @Inject
+    @ConfigProperty(name = "productos.stock.agregacion.habilitada", defaultValue = "false")
+    private boolean habilitada;
+
+    // IDs de los productos con contador en memoria; sin indicar, todos
+    @Inject
+    @ConfigProperty(name = "productos.stock.agregacion.ids")
+    private Optional<List<Integer>> ids;
+
+    @Inject
+    @ConfigProperty(name = "productos.stock.agregacion.intervaloMs", defaultValue = "200")
+    private long intervaloMs;
+
+    @Inject
+    @ConfigProperty(name = "productos.stock.agregacion.tamanoArriendo", defaultValue = "50")
+    private int tamanoArriendo;
+
+    @Inject
+    @ConfigProperty(name = "productos.stock.agregacion.arriendoSegundos", defaultValue = "30")
+    private long arriendoSegundos;
+
+    // Por encima, los productos nuevos se reservan directamente en la base de datos
+    @Inject
+    @ConfigProperty(name = "productos.stock.agregacion.maxProductos", defaultValue = "1000")
+    private int maxProductos;
+
+    @Inject
+    private ProductoDAO productoDAO;
+
+    @Inject
+    private ProductoCache productoCache;
+
+    @Inject
+    private VersionCatalogo versionCatalogo;
+
+    @Inject
+    private Event<CambioProducto> cambios;
+
+    private final Map<Integer, Contador> contadores = new ConcurrentHashMap<>();
+    // Protege los sobrantes pendientes de devolver y su escritura
+    private final ReentrantLock escritura = new ReentrantLock();
+    // Unidades arrendadas y no vendidas que hay que devolver a la base de datos
+    private final Map<Integer, Long> pendientes = new HashMap<>();
+    private Set<Integer> agregados;
+    private long arriendoNanos;
+    private ScheduledExecutorService planificador;
+
+    @PostConstruct
+    void iniciar() {
+        agregados = ids.<Set<Integer>>map(HashSet::new).orElse(null);
+        arriendoNanos = TimeUnit.SECONDS.toNanos(arriendoSegundos);
+        if (!habilitada) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "reservas-stock");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::devolverSobrantes, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            for (int id : new ArrayList<>(contadores.keySet())) {
+                retirar(id);
+            }
+            escribirPendientes();
+        }
+    }
+
+    public boolean agrega(int id) {
+        return habilitada && (agregados == null || agregados.contains(id));
+    }
+
+    // False si el producto no existe
+    public boolean reservar(int id, int unidades) throws SQLException {
+        while (true) {
+            Contador contador = contador(id);
+            if (contador == null) {
+                return productoDAO.reservarStock(id, unidades);
+            }
+            long antes = contador.disponible.getAndUpdate(x -> x == RETIRADO || x < unidades ? x : x - unidades);
+            if (antes == RETIRADO) {
+                continue;
+            }
+            contador.ultimoUso = System.nanoTime();
+            if (antes >= unidades) {
+                return true;
+            }
+            if (!arrendar(id, contador, unidades)) {
+                return false;
+            }
+        }
+    }
+
+    public boolean liberar(int id, int unidades) throws SQLException {
+        Contador contador = contadores.get(id);
+        if (contador == null) {
+            return productoDAO.liberarStock(id, unidades);
+        }
+        long antes = contador.disponible.getAndUpdate(x -> x == RETIRADO || x > Integer.MAX_VALUE - unidades ? x : x + unidades);
+        if (antes == RETIRADO) {
+            return productoDAO.liberarStock(id, unidades);
+        }
+        if (antes > Integer.MAX_VALUE - unidades) {
+            throw new SQLException("La cantidad del producto con ID " + id + " superaría el máximo admitido");
+        }
+        contador.ultimoUso = System.nanoTime();
+        return true;
+    }
+
+    // Tras escribir la cantidad por otra vía; lo arrendado sin vender se devuelve en la siguiente pasada
+    public void retirar(int id) {
+        Contador contador = contadores.remove(id);
+        if (contador == null) {
+            return;
+        }
+        long sobrante = contador.disponible.getAndSet(RETIRADO);
+        if (sobrante > 0) {
+            anotarDevolucion(id, sobrante);
+        }
+    }
+
+    // Null si ya hay maxProductos contadores y este no es uno de ellos
+    private Contador contador(int id) {
+        Contador contador = contadores.get(id);
+        if (contador != null || contadores.size() >= maxProductos) {
+            return contador;
+        }
+        return contadores.computeIfAbsent(id, clave -> new Contador());
+    }
+
+    // Un bloque de tamanoArriendo o, si no quedan tantas, lo justo para esta reserva. False si el
+    // producto no existe. Uno solo arrienda a la vez por contador; los demás reintentan con lo que traiga
+    private boolean arrendar(int id, Contador contador, int unidades) throws SQLException {
+        contador.arriendo.lock();
+        try {
+            long disponible = contador.disponible.get();
+            if (disponible == RETIRADO || disponible >= unidades) {
+                return true;
+            }
+            int falta = (int) (unidades - disponible);
+            int lote = Math.max(falta, tamanoArriendo);
+            boolean existe;
+            try {
+                existe = productoDAO.reservarStock(id, lote);
+            } catch (StockInsuficienteException e) {
+                if (lote == falta) {
+                    throw new StockInsuficienteException(id, unidades);
+                }
+                lote = falta;
+                try {
+                    existe = productoDAO.reservarStock(id, lote);
+                } catch (StockInsuficienteException sinStock) {
+                    throw new StockInsuficienteException(id, unidades);
+                }
+            }
+            if (!existe) {
+                contadores.remove(id, contador);
+                return false;
+            }
+
+            int arrendado = lote;
+            long previo = contador.disponible.getAndUpdate(x -> x == RETIRADO ? x : x + arrendado);
+            if (previo == RETIRADO) {
+                anotarDevolucion(id, arrendado);
+            }
+        } finally {
+            contador.arriendo.unlock();
+        }
+        publicarCambio(List.of(id));
+        return true;
+    }
+
+    private void anotarDevolucion(int id, long unidades) {
+        escritura.lock();
+        try {
+            pendientes.merge(id, unidades, Long::sum);
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    // Retira los contadores sin uso y recorta los que acumulan más del doble de un bloque
+    private void devolverSobrantes() {
+        long ahora = System.nanoTime();
+        for (Map.Entry<Integer, Contador> entrada : contadores.entrySet()) {
+            int id = entrada.getKey();
+            Contador contador = entrada.getValue();
+            if (ahora - contador.ultimoUso > arriendoNanos) {
+                retirar(id);
+                continue;
+            }
+            long disponible = contador.disponible.get();
+            long exceso = disponible - tamanoArriendo;
+            if (disponible != RETIRADO && disponible > 2L * tamanoArriendo
+                    && contador.disponible.compareAndSet(disponible, tamanoArriendo)) {
+                anotarDevolucion(id, exceso);
+            }
+        }
+        escribirPendientes();
+    }
+
+    // Un fallo deja los sobrantes como estaban para el siguiente intento
+    private void escribirPendientes() {
+        List<Integer> escritos;
+        escritura.lock();
+        try {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            productoDAO.devolverStock(pendientes);
+            escritos = new ArrayList<>(pendientes.keySet());
+            pendientes.clear();
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error al devolver stock arrendado, se reintentará: " + e.getMessage(), e);
+            return;
+        } finally {
+            escritura.unlock();
+        }
+        publicarCambio(escritos);
+    }
+
+    private void publicarCambio(List<Integer> escritos) {
+        for (int id : escritos) {
+            productoCache.invalidar(id);
+            cambios.fire(CambioProducto.actualizado(id));
+        }
+        versionCatalogo.registrarCambio();
+    }
+
+    private static final class Contador {
+        // Unidades arrendadas aún sin vender
+        private final AtomicLong disponible = new AtomicLong();
+        private final ReentrantLock arriendo = new ReentrantLock();
+        private volatile long ultimoUso = System.nanoTime();
+    }
+}
@@ -0,0 +1,85 @@
+package com.microprofile.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Recuento de una importación y los primeros errores por fila; los demás solo se cuentan
+// para que una entrada con millones de filas erróneas no agote la memoria
+public class ResultadoImportacion {
+
+    private final int maxErrores;
+    private final List<ErrorFila> errores = new ArrayList<>();
+    private long creados;
+    private long actualizados;
+    private long erroneas;
+
+    public ResultadoImportacion(int maxErrores) {
+        this.maxErrores = maxErrores;
+    }
+
+    void creado() {
+        creados++;
+    }
+
+    void actualizado() {
+        actualizados++;
+    }
+
+    void error(int linea, String mensaje) {
+        erroneas++;
+        if (errores.size() < maxErrores) {
+            errores.add(new ErrorFila(linea, mensaje));
+        }
+    }
+
+    public long getFilas() {
+        return creados + actualizados + erroneas;
+    }
+
+    public long getCreados() {
+        return creados;
+    }
+
+    public long getActualizados() {
+        return actualizados;
+    }
+
+    public long getErroneas() {
+        return erroneas;
+    }
+
+    public List<ErrorFila> getErrores() {
+        return Collections.unmodifiableList(errores);
+    }
+
+    @Override
+    public String toString() {
+        return "creados " + creados + ", actualizados " + actualizados + ", con errores " + erroneas;
+    }
+
+    // Se llama tras confirmar cada lote con el recuento hasta ese momento, en el hilo de la importación
+    @FunctionalInterface
+    public interface Progreso {
+        void avance(ResultadoImportacion resultado) throws IOException;
+    }
+
+    public static final class ErrorFila {
+        private final int linea;
+        private final String mensaje;
+
+        private ErrorFila(int linea, String mensaje) {
+            this.linea = linea;
+            this.mensaje = mensaje;
+        }
+
+        public int getLinea() {
+            return linea;
+        }
+
+        public String getMensaje() {
+            return mensaje;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.microprofile.service;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import jakarta.enterprise.context.ApplicationScoped;
+
+// Versión del catálogo en memoria: cambia con cada escritura hecha por esta instancia.
+// Permite responder 304 a lecturas condicionales sin consultar la base de datos.
+@ApplicationScoped
+public class VersionCatalogo {
+
+    // Parte de la hora de arranque para no repetir ETags emitidos por un proceso anterior
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    // En milisegundos redondeados al segundo, la precisión de las fechas HTTP
+    private volatile long ultimaModificacion = segundoActual();
+
+    public long version() {
+        return version.get();
+    }
+
+    // Null mientras dure el segundo del último cambio: con la precisión de las fechas HTTP, otra
+    // escritura en ese mismo segundo no movería la fecha y un If-Modified-Since recibiría un 304 obsoleto
+    public Date ultimaModificacion() {
+        long fecha = ultimaModificacion;
+        return segundoActual() > fecha ? new Date(fecha) : null;
+    }
+
+    public void registrarCambio() {
+        version.incrementAndGet();
+        ultimaModificacion = segundoActual();
+    }
+
+    private static long segundoActual() {
+        long ahora = System.currentTimeMillis();
+        return ahora - ahora % 1000;
+    }
+}
@@ -1,39 +1,194 @@
 package com.microprofile.util;
 
+import com.microprofile.config.ConnectionPool;
+import com.microprofile.config.DatabaseConfig;
+import com.microprofile.config.EnrutadorConexiones;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.health.HealthCheck;
 import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
 import org.eclipse.microprofile.health.Readiness;
 
+// La consulta de validación se ejecuta en una tarea programada, con una conexión propia fuera del
+// pool y timeout estricto; cada sondeo solo lee el último resultado y no toca la base de datos.
+// Si la comprobación se queda colgada el resultado envejece y el sondeo da DOWN aunque la tarea
+// no haya vuelto. Se informa además de la ocupación del pool y la latencia de las consultas recientes.
 @Readiness
 @ApplicationScoped
 public class DatabaseHealthCheck implements HealthCheck {
 
+    private static final Logger LOGGER = Logger.getLogger(DatabaseHealthCheck.class.getName());
+
+    @Inject
+    private ConnectionPool connectionPool;
+
+    @Inject
+    private DatabaseConfig databaseConfig;
+
+    @Inject
+    private EnrutadorConexiones enrutadorConexiones;
+
+    @Inject
+    private MetricasConsultas metricasConsultas;
+
     @Inject
-    private Connection connection;
+    @ConfigProperty(name = "database.salud.consulta", defaultValue = "SELECT 1")
+    private String consulta;
+
+    @Inject
+    @ConfigProperty(name = "database.salud.intervaloSegundos", defaultValue = "5")
+    private int intervaloSegundos;
+
+    @Inject
+    @ConfigProperty(name = "database.salud.timeoutSegundos", defaultValue = "2")
+    private int timeoutSegundos;
+
+    // 0 desactiva cada límite; superarlo saca la instancia de rotación
+    @Inject
+    @ConfigProperty(name = "database.salud.maxHilosEnEspera", defaultValue = "0")
+    private int maxHilosEnEspera;
+
+    @Inject
+    @ConfigProperty(name = "database.salud.maxLatenciaP99Ms", defaultValue = "0")
+    private long maxLatenciaP99Ms;
+
+    private ScheduledExecutorService planificador;
+    // Solo la usa el hilo del planificador
+    private Connection conexion;
+    private volatile Comprobacion ultima = new Comprobacion(false, "La base de datos aún no se ha comprobado", -1, new long[0]);
+
+    void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "salud-base-datos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::comprobar, 0, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+        cerrarConexion();
+    }
 
     @Override
     public HealthCheckResponse call() {
+        Comprobacion comprobacion = ultima;
+        long antiguedadMs = System.currentTimeMillis() - comprobacion.instante;
+        int hilosEnEspera = connectionPool.getHilosEnEspera();
+        long p99Ms = TimeUnit.NANOSECONDS.toMillis(comprobacion.percentil(0.99));
+
+        String problema = comprobacion.error;
+        if (problema == null && antiguedadMs > TimeUnit.SECONDS.toMillis(intervaloSegundos + 2L * timeoutSegundos)) {
+            problema = "La última comprobación terminó hace " + antiguedadMs + " ms; la base de datos no responde";
+        } else if (problema == null && maxHilosEnEspera > 0 && hilosEnEspera >= maxHilosEnEspera) {
+            problema = "Pool saturado: " + hilosEnEspera + " hilos esperando una conexión";
+        } else if (problema == null && maxLatenciaP99Ms > 0 && p99Ms >= maxLatenciaP99Ms) {
+            problema = "Consultas lentas: p99 de " + p99Ms + " ms";
+        }
+
+        HealthCheckResponseBuilder respuesta = HealthCheckResponse.named("database")
+                .status(problema == null)
+                .withData("validacionMs", comprobacion.validacionMs)
+                .withData("ultimaComprobacion", Instant.ofEpochMilli(comprobacion.instante).toString())
+                .withData("conexionesActivas", connectionPool.getConexionesActivas())
+                .withData("conexionesInactivas", connectionPool.getConexionesInactivas())
+                .withData("conexionesMaximas", connectionPool.getMaximo())
+                .withData("hilosEnEspera", hilosEnEspera)
+                .withData("replicas", enrutadorConexiones.getReplicas())
+                .withData("replicasDisponibles", enrutadorConexiones.getReplicasDisponibles())
+                .withData("consultasRecientes", comprobacion.duraciones.length)
+                .withData("consultasP50Us", TimeUnit.NANOSECONDS.toMicros(comprobacion.percentil(0.5)))
+                .withData("consultasP95Us", TimeUnit.NANOSECONDS.toMicros(comprobacion.percentil(0.95)))
+                .withData("consultasP99Us", TimeUnit.NANOSECONDS.toMicros(comprobacion.percentil(0.99)));
+        if (problema != null) {
+            respuesta.withData("error", problema);
+        }
+        return respuesta.build();
+    }
+
+    // Los percentiles se calculan aquí, una vez por intervalo, y no en cada sondeo
+    private void comprobar() {
+        long inicio = System.nanoTime();
         try {
-            if (connection != null && !connection.isClosed()) {
-                return HealthCheckResponse.named("database")
-                        .up()
-                        .withData("conexion", "activa")
-                        .build();
-            } else {
-                return HealthCheckResponse.named("database")
-                        .down()
-                        .withData("error", "Conexión a base de datos cerrada o nula")
-                        .build();
+            if (conexion == null) {
+                conexion = databaseConfig.createConnection();
+                limitarRed(conexion);
+            }
+            try (Statement stmt = conexion.createStatement()) {
+                stmt.setQueryTimeout(timeoutSegundos);
+                stmt.execute(consulta);
+            }
+            ultima = new Comprobacion(true, null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio),
+                    metricasConsultas.duracionesRecientes());
+        } catch (SQLException | RuntimeException e) {
+            if (ultima.error == null) {
+                LOGGER.log(Level.WARNING, "La comprobación de la base de datos falló: " + e.getMessage(), e);
+            }
+            cerrarConexion();
+            ultima = new Comprobacion(false, e.getMessage(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio),
+                    metricasConsultas.duracionesRecientes());
+        }
+    }
+
+    // El timeout de la sentencia no cubre una red colgada; no todos los drivers lo admiten
+    private void limitarRed(Connection conexion) {
+        try {
+            conexion.setNetworkTimeout(Runnable::run, (int) TimeUnit.SECONDS.toMillis(2L * timeoutSegundos));
+        } catch (SQLException | UnsupportedOperationException e) {
+            LOGGER.fine("El driver no admite timeout de red: " + e.getMessage());
+        }
+    }
+
+    private void cerrarConexion() {
+        Connection actual = conexion;
+        conexion = null;
+        if (actual != null) {
+            try {
+                actual.close();
+            } catch (SQLException e) {
+                LOGGER.fine("Error al cerrar la conexión de salud: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Comprobacion {
+        private final boolean correcta;
+        private final String error;
+        private final long validacionMs;
+        private final long instante = System.currentTimeMillis();
+        // Ordenadas, en nanosegundos
+        private final long[] duraciones;
+
+        private Comprobacion(boolean correcta, String error, long validacionMs, long[] duraciones) {
+            this.correcta = correcta;
+            this.error = correcta ? null : (error != null ? error : "Error desconocido");
+            this.validacionMs = validacionMs;
+            this.duraciones = duraciones;
+        }
+
+        private long percentil(double cuantil) {
+            if (duraciones.length == 0) {
+                return 0;
             }
-        } catch (SQLException e) {
-            return HealthCheckResponse.named("database")
-                    .down()
-                    .withData("error", e.getMessage())
-                    .build();
+            return duraciones[(int) Math.min(duraciones.length - 1, Math.ceil(cuantil * duraciones.length) - 1)];
         }
     }
-}
\ No newline at end of file
+}
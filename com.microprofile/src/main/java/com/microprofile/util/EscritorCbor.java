@@ -0,0 +1,163 @@
+package com.microprofile.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+// Codificador CBOR (RFC 8949) con lo que necesitan las respuestas de productos: enteros, texto,
+// nulos, mapas, listas (también de longitud indefinida, para streaming) y decimales exactos.
+// Acumula en un búfer propio; hay que llamar a flush() al terminar.
+public final class EscritorCbor {
+
+    private static final int ENTERO = 0;
+    private static final int NEGATIVO = 1 << 5;
+    private static final int BYTES = 2 << 5;
+    private static final int TEXTO = 3 << 5;
+    private static final int LISTA = 4 << 5;
+    private static final int MAPA = 5 << 5;
+    private static final int ETIQUETA = 6 << 5;
+    private static final int NULO = 0xf6;
+    private static final int INDEFINIDA = 31;
+    private static final int FIN = 0xff;
+    // Etiquetas estándar: bignum positivo/negativo y fracción decimal [exponente, mantisa]
+    private static final int ETIQUETA_BIGNUM = 2;
+    private static final int ETIQUETA_BIGNUM_NEGATIVO = 3;
+    private static final int ETIQUETA_DECIMAL = 4;
+
+    private final OutputStream salida;
+    private final byte[] bufer = new byte[8192];
+    private int posicion;
+
+    public EscritorCbor(OutputStream salida) {
+        this.salida = salida;
+    }
+
+    public EscritorCbor entero(long valor) throws IOException {
+        if (valor >= 0) {
+            cabecera(ENTERO, valor);
+        } else {
+            cabecera(NEGATIVO, -1 - valor);
+        }
+        return this;
+    }
+
+    public EscritorCbor texto(String valor) throws IOException {
+        if (valor == null) {
+            return nulo();
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        cabecera(TEXTO, bytes.length);
+        escribir(bytes);
+        return this;
+    }
+
+    public EscritorCbor nulo() throws IOException {
+        octeto(NULO);
+        return this;
+    }
+
+    // Fracción decimal: no pierde precisión como un double
+    public EscritorCbor decimal(BigDecimal valor) throws IOException {
+        if (valor == null) {
+            return nulo();
+        }
+        cabecera(ETIQUETA, ETIQUETA_DECIMAL);
+        cabecera(LISTA, 2);
+        entero(-valor.scale());
+        BigInteger mantisa = valor.unscaledValue();
+        if (mantisa.bitLength() < Long.SIZE) {
+            entero(mantisa.longValue());
+        } else if (mantisa.signum() >= 0) {
+            cabecera(ETIQUETA, ETIQUETA_BIGNUM);
+            bytes(mantisa.toByteArray());
+        } else {
+            cabecera(ETIQUETA, ETIQUETA_BIGNUM_NEGATIVO);
+            bytes(mantisa.negate().subtract(BigInteger.ONE).toByteArray());
+        }
+        return this;
+    }
+
+    public EscritorCbor inicioMapa(int entradas) throws IOException {
+        cabecera(MAPA, entradas);
+        return this;
+    }
+
+    public EscritorCbor inicioLista(int elementos) throws IOException {
+        cabecera(LISTA, elementos);
+        return this;
+    }
+
+    // Para cuando no se sabe cuántos elementos habrá; se cierra con fin()
+    public EscritorCbor inicioListaIndefinida() throws IOException {
+        octeto(LISTA | INDEFINIDA);
+        return this;
+    }
+
+    public EscritorCbor fin() throws IOException {
+        octeto(FIN);
+        return this;
+    }
+
+    public void flush() throws IOException {
+        vaciar();
+        salida.flush();
+    }
+
+    private void bytes(byte[] valor) throws IOException {
+        cabecera(BYTES, valor.length);
+        escribir(valor);
+    }
+
+    // Tipo mayor en los 3 bits altos y el argumento en la forma más corta posible
+    private void cabecera(int tipo, long argumento) throws IOException {
+        if (argumento < 24) {
+            octeto(tipo | (int) argumento);
+        } else if (argumento < 0x100) {
+            octeto(tipo | 24);
+            octeto((int) argumento);
+        } else if (argumento < 0x10000) {
+            octeto(tipo | 25);
+            numero(argumento, 2);
+        } else if (argumento < 0x100000000L) {
+            octeto(tipo | 26);
+            numero(argumento, 4);
+        } else {
+            octeto(tipo | 27);
+            numero(argumento, 8);
+        }
+    }
+
+    private void numero(long valor, int bytes) throws IOException {
+        for (int i = bytes - 1; i >= 0; i--) {
+            octeto((int) (valor >>> (i * 8)));
+        }
+    }
+
+    private void octeto(int valor) throws IOException {
+        if (posicion == bufer.length) {
+            vaciar();
+        }
+        bufer[posicion++] = (byte) valor;
+    }
+
+    private void escribir(byte[] valor) throws IOException {
+        if (valor.length > bufer.length - posicion) {
+            vaciar();
+            if (valor.length > bufer.length) {
+                salida.write(valor);
+                return;
+            }
+        }
+        System.arraycopy(valor, 0, bufer, posicion, valor.length);
+        posicion += valor.length;
+    }
+
+    private void vaciar() throws IOException {
+        if (posicion > 0) {
+            salida.write(bufer, 0, posicion);
+            posicion = 0;
+        }
+    }
+}
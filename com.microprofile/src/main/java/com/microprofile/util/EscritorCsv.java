@@ -0,0 +1,71 @@
+package com.microprofile.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Escritor CSV (RFC 4180): separador coma, fin de línea CRLF y comillas solo donde hacen falta.
+// Un null se escribe como campo vacío y un texto vacío como "", para que LectorCsv los distinga.
+public final class EscritorCsv {
+
+    private final Writer salida;
+    private boolean inicioFila = true;
+
+    public EscritorCsv(Writer salida) {
+        this.salida = salida;
+    }
+
+    public EscritorCsv campo(String valor) throws IOException {
+        separar();
+        if (valor == null) {
+            return this;
+        }
+        if (!valor.isEmpty() && !necesitaComillas(valor)) {
+            salida.write(valor);
+            return this;
+        }
+        salida.write('"');
+        int desde = 0;
+        for (int i = valor.indexOf('"'); i >= 0; i = valor.indexOf('"', desde)) {
+            salida.write(valor, desde, i + 1 - desde);
+            salida.write('"');
+            desde = i + 1;
+        }
+        salida.write(valor, desde, valor.length() - desde);
+        salida.write('"');
+        return this;
+    }
+
+    public EscritorCsv campo(long valor) throws IOException {
+        separar();
+        salida.write(Long.toString(valor));
+        return this;
+    }
+
+    public EscritorCsv finFila() throws IOException {
+        salida.write("\r\n");
+        inicioFila = true;
+        return this;
+    }
+
+    public void flush() throws IOException {
+        salida.flush();
+    }
+
+    private void separar() throws IOException {
+        if (!inicioFila) {
+            salida.write(',');
+        }
+        inicioFila = false;
+    }
+
+    private static boolean necesitaComillas(String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        // Los espacios de los extremos se pierden en algunas hojas de cálculo
+        return Character.isWhitespace(valor.charAt(0)) || Character.isWhitespace(valor.charAt(valor.length() - 1));
+    }
+}
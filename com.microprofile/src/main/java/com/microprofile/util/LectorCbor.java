@@ -0,0 +1,258 @@
+package com.microprofile.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Decodificador CBOR (RFC 8949) a objetos Java: Long o BigInteger, String, byte[], List, Map,
+// Boolean, Double, null y BigDecimal para la fracción decimal (etiqueta 4). Las demás etiquetas
+// se ignoran y se devuelve el valor que envuelven. Limita tamaños y anidamiento porque el
+// cuerpo viene del cliente.
+public final class LectorCbor {
+
+    private static final int MAXIMO_ANIDAMIENTO = 32;
+    private static final int MAXIMO_CADENA = 1 << 20;
+    private static final int FIN = 0xff;
+
+    private final InputStream entrada;
+
+    public LectorCbor(InputStream entrada) {
+        this.entrada = entrada;
+    }
+
+    public Object leer() throws IOException {
+        return leer(0, false);
+    }
+
+    private Object leer(int profundidad, boolean admiteFin) throws IOException {
+        if (profundidad > MAXIMO_ANIDAMIENTO) {
+            throw new IOException("CBOR demasiado anidado");
+        }
+        int inicial = octeto();
+        if (inicial == FIN) {
+            if (admiteFin) {
+                return Fin.INSTANCIA;
+            }
+            throw new IOException("Marca de fin inesperada");
+        }
+        int tipo = inicial >>> 5;
+        int adicional = inicial & 0x1f;
+
+        switch (tipo) {
+            case 0:
+                return entero(argumento(adicional), false);
+            case 1:
+                return entero(argumento(adicional), true);
+            case 2:
+                return cadena(adicional, profundidad);
+            case 3:
+                return new String(cadena(adicional, profundidad), StandardCharsets.UTF_8);
+            case 4:
+                return lista(adicional, profundidad);
+            case 5:
+                return mapa(adicional, profundidad);
+            case 6:
+                return etiqueta(argumento(adicional), profundidad);
+            default:
+                return simple(adicional);
+        }
+    }
+
+    // Los enteros que no caben en un long con signo se devuelven como BigInteger
+    private Object entero(long argumento, boolean negativo) {
+        if (argumento >= 0) {
+            return negativo ? -1 - argumento : argumento;
+        }
+        BigInteger valor = new BigInteger(Long.toUnsignedString(argumento));
+        return negativo ? BigInteger.ONE.negate().subtract(valor) : valor;
+    }
+
+    private byte[] cadena(int adicional, int profundidad) throws IOException {
+        if (adicional != 31) {
+            return leerBytes(longitud(argumento(adicional)));
+        }
+        // Longitud indefinida: trozos definidos hasta la marca de fin
+        ByteArrayOutputStream trozos = new ByteArrayOutputStream();
+        while (true) {
+            Object trozo = leer(profundidad + 1, true);
+            if (trozo == Fin.INSTANCIA) {
+                return trozos.toByteArray();
+            }
+            byte[] bytes;
+            if (trozo instanceof String) {
+                bytes = ((String) trozo).getBytes(StandardCharsets.UTF_8);
+            } else if (trozo instanceof byte[]) {
+                bytes = (byte[]) trozo;
+            } else {
+                throw new IOException("Trozo de cadena CBOR inválido");
+            }
+            if (trozos.size() + bytes.length > MAXIMO_CADENA) {
+                throw new IOException("Cadena CBOR demasiado larga");
+            }
+            trozos.write(bytes);
+        }
+    }
+
+    private List<Object> lista(int adicional, int profundidad) throws IOException {
+        if (adicional == 31) {
+            List<Object> elementos = new ArrayList<>();
+            while (true) {
+                Object elemento = leer(profundidad + 1, true);
+                if (elemento == Fin.INSTANCIA) {
+                    return elementos;
+                }
+                elementos.add(elemento);
+            }
+        }
+        int elementos = longitud(argumento(adicional));
+        // No se reserva según la longitud declarada: podría ser falsa
+        List<Object> lista = new ArrayList<>(Math.min(elementos, 1024));
+        for (int i = 0; i < elementos; i++) {
+            lista.add(leer(profundidad + 1, false));
+        }
+        return lista;
+    }
+
+    private Map<Object, Object> mapa(int adicional, int profundidad) throws IOException {
+        Map<Object, Object> mapa = new LinkedHashMap<>();
+        if (adicional == 31) {
+            while (true) {
+                Object clave = leer(profundidad + 1, true);
+                if (clave == Fin.INSTANCIA) {
+                    return mapa;
+                }
+                mapa.put(clave, leer(profundidad + 1, false));
+            }
+        }
+        int entradas = longitud(argumento(adicional));
+        for (int i = 0; i < entradas; i++) {
+            Object clave = leer(profundidad + 1, false);
+            mapa.put(clave, leer(profundidad + 1, false));
+        }
+        return mapa;
+    }
+
+    private Object etiqueta(long etiqueta, int profundidad) throws IOException {
+        Object valor = leer(profundidad + 1, false);
+        if (etiqueta == 2 && valor instanceof byte[]) {
+            return new BigInteger(1, (byte[]) valor);
+        }
+        if (etiqueta == 3 && valor instanceof byte[]) {
+            return BigInteger.ONE.negate().subtract(new BigInteger(1, (byte[]) valor));
+        }
+        if (etiqueta == 4 && valor instanceof List && ((List<?>) valor).size() == 2) {
+            List<?> partes = (List<?>) valor;
+            if (partes.get(0) instanceof Long) {
+                long exponente = (Long) partes.get(0);
+                if (exponente < Integer.MIN_VALUE + 1 || exponente > Integer.MAX_VALUE) {
+                    throw new IOException("Exponente decimal fuera de rango");
+                }
+                Object mantisa = partes.get(1);
+                if (mantisa instanceof Long) {
+                    return BigDecimal.valueOf((Long) mantisa, (int) -exponente);
+                }
+                if (mantisa instanceof BigInteger) {
+                    return new BigDecimal((BigInteger) mantisa, (int) -exponente);
+                }
+            }
+            throw new IOException("Fracción decimal CBOR inválida");
+        }
+        return valor;
+    }
+
+    private Object simple(int adicional) throws IOException {
+        switch (adicional) {
+            case 20:
+                return Boolean.FALSE;
+            case 21:
+                return Boolean.TRUE;
+            case 22:
+            case 23:
+                return null;
+            case 25:
+                return medioFlotante((int) argumento(adicional));
+            case 26:
+                return (double) Float.intBitsToFloat((int) argumento(adicional));
+            case 27:
+                return Double.longBitsToDouble(argumento(adicional));
+            default:
+                throw new IOException("Valor simple CBOR no admitido: " + adicional);
+        }
+    }
+
+    // Media precisión (RFC 8949, apéndice D)
+    private static double medioFlotante(int bits) {
+        int exponente = (bits >> 10) & 0x1f;
+        int mantisa = bits & 0x3ff;
+        double valor;
+        if (exponente == 0) {
+            valor = mantisa * Math.pow(2, -24);
+        } else if (exponente != 31) {
+            valor = (mantisa + 1024) * Math.pow(2, exponente - 25);
+        } else {
+            valor = mantisa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (bits & 0x8000) != 0 ? -valor : valor;
+    }
+
+    private long argumento(int adicional) throws IOException {
+        if (adicional < 24) {
+            return adicional;
+        }
+        switch (adicional) {
+            case 24:
+                return octeto();
+            case 25:
+                return numero(2);
+            case 26:
+                return numero(4);
+            case 27:
+                return numero(8);
+            default:
+                throw new IOException("Cabecera CBOR inválida");
+        }
+    }
+
+    private int longitud(long argumento) throws IOException {
+        if (argumento < 0 || argumento > MAXIMO_CADENA) {
+            throw new IOException("Longitud CBOR demasiado grande: " + Long.toUnsignedString(argumento));
+        }
+        return (int) argumento;
+    }
+
+    private long numero(int bytes) throws IOException {
+        long valor = 0;
+        for (int i = 0; i < bytes; i++) {
+            valor = (valor << 8) | octeto();
+        }
+        return valor;
+    }
+
+    private byte[] leerBytes(int longitud) throws IOException {
+        byte[] bytes = entrada.readNBytes(longitud);
+        if (bytes.length < longitud) {
+            throw new EOFException("CBOR incompleto");
+        }
+        return bytes;
+    }
+
+    private int octeto() throws IOException {
+        int valor = entrada.read();
+        if (valor < 0) {
+            throw new EOFException("CBOR incompleto");
+        }
+        return valor;
+    }
+
+    private enum Fin {
+        INSTANCIA
+    }
+}
@@ -0,0 +1,142 @@
+package com.microprofile.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lector CSV (RFC 4180) fila a fila, sin cargar la entrada en memoria. Admite saltos de línea
+// entre comillas, "" como comilla escapada, fin de línea LF o CRLF y BOM inicial. Un campo vacío
+// sin comillas se lee como null. Limita el tamaño de los campos porque el cuerpo viene del cliente.
+public final class LectorCsv {
+
+    private static final int MAXIMO_CAMPO = 1 << 20;
+    private static final int MAXIMO_CAMPOS = 1024;
+    private static final int SEPARADOR = ',';
+    private static final int NADA = -2;
+
+    private final Reader entrada;
+    // Lectura propia por bloques: BufferedReader.read() sincroniza en cada carácter
+    private final char[] buffer = new char[8192];
+    private int posicion;
+    private int limite;
+    private int devuelto = NADA;
+    private int linea = 1;
+    private int lineaFila;
+
+    public LectorCsv(Reader entrada) {
+        this.entrada = entrada;
+    }
+
+    // Null al terminar la entrada; las líneas vacías se saltan
+    public List<String> leerFila() throws IOException {
+        while (true) {
+            int c = leer();
+            if (lineaFila == 0 && c == '\uFEFF') {
+                c = leer();
+            }
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                finDeLinea(c);
+                continue;
+            }
+            devuelto = c;
+            lineaFila = linea;
+            return fila();
+        }
+    }
+
+    // Línea en la que empieza la última fila leída
+    public int linea() {
+        return lineaFila;
+    }
+
+    private List<String> fila() throws IOException {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        while (true) {
+            if (campos.size() == MAXIMO_CAMPOS) {
+                throw new IOException("Demasiados campos en la línea " + lineaFila);
+            }
+            campo.setLength(0);
+            int c = leer();
+            boolean conComillas = c == '"';
+            if (conComillas) {
+                c = entreComillas(campo);
+            } else {
+                while (c != SEPARADOR && c != '\r' && c != '\n' && c != -1) {
+                    agregar(campo, c);
+                    c = leer();
+                }
+            }
+            campos.add(conComillas || campo.length() > 0 ? campo.toString() : null);
+
+            if (c == SEPARADOR) {
+                continue;
+            }
+            if (c == '\r' || c == '\n') {
+                finDeLinea(c);
+            } else if (c != -1) {
+                throw new IOException("Se esperaba una coma o un fin de línea tras las comillas en la línea " + linea);
+            }
+            return campos;
+        }
+    }
+
+    // Devuelve el carácter que sigue a las comillas de cierre
+    private int entreComillas(StringBuilder campo) throws IOException {
+        int inicio = linea;
+        while (true) {
+            int c = leer();
+            if (c == -1) {
+                throw new EOFException("Comillas sin cerrar desde la línea " + inicio);
+            }
+            if (c == '"') {
+                c = leer();
+                if (c != '"') {
+                    return c;
+                }
+            } else if (c == '\n') {
+                linea++;
+            }
+            agregar(campo, c);
+        }
+    }
+
+    private void finDeLinea(int c) throws IOException {
+        if (c == '\r') {
+            int siguiente = leer();
+            if (siguiente != '\n') {
+                devuelto = siguiente;
+            }
+        }
+        linea++;
+    }
+
+    private void agregar(StringBuilder campo, int c) throws IOException {
+        if (campo.length() == MAXIMO_CAMPO) {
+            throw new IOException("Campo demasiado largo en la línea " + linea);
+        }
+        campo.append((char) c);
+    }
+
+    private int leer() throws IOException {
+        if (devuelto != NADA) {
+            int c = devuelto;
+            devuelto = NADA;
+            return c;
+        }
+        if (posicion == limite) {
+            limite = entrada.read(buffer, 0, buffer.length);
+            posicion = 0;
+            if (limite <= 0) {
+                limite = 0;
+                return -1;
+            }
+        }
+        return buffer[posicion++];
+    }
+}
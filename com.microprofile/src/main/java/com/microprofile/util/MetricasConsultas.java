@@ -0,0 +1,103 @@
+package com.microprofile.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+// Métricas de latencia por sentencia SQL, filas leídas, espera de conexión y serialización.
+// Los timers e histogramas se exportan en /metrics con percentiles (p50 ... p999).
+// Las duraciones de las últimas RECIENTES operaciones se guardan además en un anillo para la readiness.
+@ApplicationScoped
+public class MetricasConsultas {
+
+    private static final int RECIENTES = 1024;
+
+    private static final Metadata DURACION_CONSULTA = metadata("productos.consultas.duracion",
+            "Tiempo total de cada operación del DAO, incluida la espera de conexión", MetricType.TIMER, MetricUnits.NANOSECONDS);
+    private static final Metadata FILAS_CONSULTA = metadata("productos.consultas.filas",
+            "Filas leídas o afectadas por cada operación del DAO", MetricType.HISTOGRAM, MetricUnits.NONE);
+    private static final Metadata SERIALIZACION = metadata("productos.respuesta.serializacion",
+            "Tiempo de escritura del cuerpo de la respuesta", MetricType.TIMER, MetricUnits.NANOSECONDS);
+
+    @Inject
+    @ConfigProperty(name = "productos.consultas.metricas.habilitado", defaultValue = "true")
+    private boolean habilitado;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final Map<String, Timer> duraciones = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> filas = new ConcurrentHashMap<>();
+    private final Map<String, Timer> serializaciones = new ConcurrentHashMap<>();
+    private Timer adquisicion;
+    private final AtomicLongArray recientes = new AtomicLongArray(RECIENTES);
+    private final AtomicLong registradas = new AtomicLong();
+
+    @PostConstruct
+    void inicializar() {
+        if (habilitado) {
+            adquisicion = metricRegistry.timer(metadata("productos.conexion.adquisicion",
+                    "Tiempo de espera para obtener una conexión del pool", MetricType.TIMER, MetricUnits.NANOSECONDS));
+        }
+    }
+
+    public void registrarConsulta(String operacion, int filasLeidas, long inicioNanos) {
+        if (!habilitado) {
+            return;
+        }
+        long duracion = System.nanoTime() - inicioNanos;
+        recientes.set((int) (registradas.getAndIncrement() % RECIENTES), duracion);
+        duraciones.computeIfAbsent(operacion, op -> metricRegistry.timer(DURACION_CONSULTA, new Tag("operacion", op)))
+                .update(Duration.ofNanos(duracion));
+        filas.computeIfAbsent(operacion, op -> metricRegistry.histogram(FILAS_CONSULTA, new Tag("operacion", op)))
+                .update(filasLeidas);
+    }
+
+    // Duraciones en nanosegundos de las últimas operaciones, ordenadas de menor a mayor
+    public long[] duracionesRecientes() {
+        int cantidad = (int) Math.min(registradas.get(), RECIENTES);
+        long[] duraciones = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            duraciones[i] = recientes.get(i);
+        }
+        Arrays.sort(duraciones);
+        return duraciones;
+    }
+
+    public void registrarAdquisicion(long inicioNanos) {
+        if (habilitado) {
+            adquisicion.update(Duration.ofNanos(System.nanoTime() - inicioNanos));
+        }
+    }
+
+    public void registrarSerializacion(String metodo, long inicioNanos) {
+        if (!habilitado) {
+            return;
+        }
+        serializaciones.computeIfAbsent(metodo, m -> metricRegistry.timer(SERIALIZACION, new Tag("metodo", m)))
+                .update(Duration.ofNanos(System.nanoTime() - inicioNanos));
+    }
+
+    private static Metadata metadata(String nombre, String descripcion, MetricType tipo, String unidad) {
+        return Metadata.builder()
+                .withName(nombre)
+                .withDescription(descripcion)
+                .withType(tipo)
+                .withUnit(unidad)
+                .build();
+    }
+}
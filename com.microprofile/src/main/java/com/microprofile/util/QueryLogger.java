@@ -0,0 +1,120 @@
+package com.microprofile.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Registro estructurado de consultas: un evento por consulta (operación, id, filas, duración).
+// Deshabilitado no asigna memoria; habilitado encola el evento y un hilo aparte lo escribe,
+// descartando eventos si la cola se llena en lugar de bloquear la petición.
+@ApplicationScoped
+public class QueryLogger {
+
+    private static final Logger LOGGER = Logger.getLogger("com.microprofile.consultas");
+
+    public static final int SIN_ID = -1;
+
+    @Inject
+    @ConfigProperty(name = "productos.consultas.log.habilitado", defaultValue = "true")
+    private boolean habilitado;
+
+    // Fracción de consultas registradas (0.0 - 1.0); las lentas se registran siempre
+    @Inject
+    @ConfigProperty(name = "productos.consultas.log.muestreo", defaultValue = "0.1")
+    private double muestreo;
+
+    @Inject
+    @ConfigProperty(name = "productos.consultas.log.umbralLentoMs", defaultValue = "500")
+    private long umbralLentoMs;
+
+    @Inject
+    @ConfigProperty(name = "productos.consultas.log.capacidad", defaultValue = "4096")
+    private int capacidad;
+
+    private final AtomicLong descartados = new AtomicLong();
+    private ArrayBlockingQueue<EventoConsulta> cola;
+    private long umbralLentoNanos;
+    private Thread escritor;
+
+    @PostConstruct
+    void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        umbralLentoNanos = TimeUnit.MILLISECONDS.toNanos(umbralLentoMs);
+        cola = new ArrayBlockingQueue<>(capacidad);
+        escritor = new Thread(this::escribir, "consultas-log");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    @PreDestroy
+    void detener() {
+        if (escritor != null) {
+            escritor.interrupt();
+        }
+    }
+
+    public boolean activo() {
+        return habilitado && LOGGER.isLoggable(Level.INFO);
+    }
+
+    public void registrar(String operacion, int id, int filas, long inicioNanos) {
+        if (!activo()) {
+            return;
+        }
+        long duracion = System.nanoTime() - inicioNanos;
+        if (duracion < umbralLentoNanos && muestreo < 1.0 && ThreadLocalRandom.current().nextDouble() >= muestreo) {
+            return;
+        }
+        if (!cola.offer(new EventoConsulta(operacion, id, filas, duracion))) {
+            descartados.incrementAndGet();
+        }
+    }
+
+    private void escribir() {
+        StringBuilder linea = new StringBuilder(128);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                EventoConsulta evento = cola.take();
+                linea.setLength(0);
+                linea.append("consulta operacion=").append(evento.operacion);
+                if (evento.id != SIN_ID) {
+                    linea.append(" id=").append(evento.id);
+                }
+                linea.append(" filas=").append(evento.filas)
+                        .append(" duracionUs=").append(TimeUnit.NANOSECONDS.toMicros(evento.duracionNanos));
+                LOGGER.log(evento.duracionNanos >= umbralLentoNanos ? Level.WARNING : Level.INFO, linea.toString());
+
+                long perdidos = descartados.getAndSet(0);
+                if (perdidos > 0) {
+                    LOGGER.warning("Cola de registro de consultas llena: " + perdidos + " eventos descartados");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class EventoConsulta {
+        private final String operacion;
+        private final int id;
+        private final int filas;
+        private final long duracionNanos;
+
+        private EventoConsulta(String operacion, int id, int filas, long duracionNanos) {
+            this.operacion = operacion;
+            this.id = id;
+            this.filas = filas;
+            this.duracionNanos = duracionNanos;
+        }
+    }
+}
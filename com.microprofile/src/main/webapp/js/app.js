@@ -27,16 +27,91 @@ let productoIdAEliminar = null;
 // Variable para seguimiento de intentos de carga
 let intentosDeCarga = 0;
 const MAX_INTENTOS = 3;
+// Con el flujo de eventos abierto la tabla se actualiza sola y no hace falta recargarla
+let eventosConectados = false;
+// Eventos recibidos mientras se carga el listado: se aplican al terminar, o la respuesta (anterior) los taparía
+let cargandoListado = false;
+let eventosEnEspera = [];
+let listadoIniciado = false;
 
 // Modal de Bootstrap
 const modal = new bootstrap.Modal(productoModal);
 const modalEliminar = new bootstrap.Modal(confirmarEliminarModal);
 
 // Cargar productos al cargar la página
+// El listado se pide cuando el servidor ya tiene registrada la suscripción, para no perder
+// cambios entre la lectura y la conexión; sin eventos, directamente
 document.addEventListener('DOMContentLoaded', () => {
-    cargarProductos();
+    if (!suscribirCambios()) {
+        iniciarListado();
+    }
 });
 
+function iniciarListado() {
+    if (!listadoIniciado) {
+        listadoIniciado = true;
+        cargarProductos();
+    }
+}
+
+// Aplica en la tabla los cambios que envía el servidor. EventSource reconecta solo y manda
+// Last-Event-ID, así que el servidor reenvía lo perdido o pide recargar.
+function suscribirCambios() {
+    if (!window.EventSource) {
+        return false;
+    }
+    const eventos = new EventSource(`${API_URL}/events`);
+
+    eventos.onopen = () => {
+        eventosConectados = true;
+    };
+    eventos.onerror = () => {
+        eventosConectados = false;
+        // Si no llega a conectar, el listado se carga igualmente
+        iniciarListado();
+    };
+
+    eventos.addEventListener('conectado', () => {
+        iniciarListado();
+    });
+    eventos.addEventListener('creado', evento => {
+        aplicarCambio(() => insertarOReemplazarFila(JSON.parse(evento.data)));
+    });
+    eventos.addEventListener('actualizado', evento => {
+        aplicarCambio(() => refrescarFila(JSON.parse(evento.data).id));
+    });
+    eventos.addEventListener('eliminado', evento => {
+        aplicarCambio(() => quitarFila(JSON.parse(evento.data).id));
+    });
+    eventos.addEventListener('recargar', () => {
+        reiniciarIntentos();
+    });
+    return true;
+}
+
+function aplicarCambio(cambio) {
+    if (cargandoListado) {
+        eventosEnEspera.push(cambio);
+        return;
+    }
+    cambio();
+}
+
+// Tras pintar el listado se aplican, en orden, los cambios que llegaron mientras tanto
+function terminarCarga() {
+    cargandoListado = false;
+    const pendientes = eventosEnEspera;
+    eventosEnEspera = [];
+    pendientes.forEach(cambio => cambio());
+}
+
+// Vuelve a cargar el listado solo si no llegan los eventos
+function recargarSiHaceFalta() {
+    if (!eventosConectados) {
+        reiniciarIntentos();
+    }
+}
+
 // Evento para guardar producto (crear o actualizar)
 guardarProductoBtn.addEventListener('click', () => {
     if (productoForm.checkValidity()) {
@@ -69,6 +144,7 @@ confirmarEliminarBtn.addEventListener('click', () => {
 // Función para cargar todos los productos con reintentos
 async function cargarProductos() {
     intentosDeCarga++;
+    cargandoListado = true;
 
     try {
         tablaProductosBody.innerHTML = '<tr><td colspan="7" class="text-center"><div class="spinner-border text-primary" role="status"><span class="visually-hidden">Cargando...</span></div></td></tr>';
@@ -87,6 +163,7 @@ async function cargarProductos() {
 
         if (Array.isArray(productos) && productos.length > 0) {
             mostrarProductosEnTabla(productos);
+            terminarCarga();
         } else {
             if (intentosDeCarga === 1) {
                 // Primera carga - intentar crear datos de ejemplo
@@ -96,6 +173,7 @@ async function cargarProductos() {
                 setTimeout(cargarProductos, 1000);
             } else {
                 tablaProductosBody.innerHTML = '<tr><td colspan="7" class="text-center">No hay productos disponibles</td></tr>';
+                terminarCarga();
             }
         }
     } catch (error) {
@@ -108,6 +186,9 @@ async function cargarProductos() {
             tablaProductosBody.innerHTML = `<tr><td colspan="7" class="text-center">Reintentando conexión (${intentosDeCarga}/${MAX_INTENTOS})...</td></tr>`;
             setTimeout(cargarProductos, retraso);
         } else {
+            // Sin listado no hay a qué aplicarlos; el botón de reintentar lo cargará entero
+            cargandoListado = false;
+            eventosEnEspera = [];
             mostrarMensaje('Error al cargar productos. Por favor, verifique la conexión a la base de datos.', 'danger');
             tablaProductosBody.innerHTML = `
                 <tr><td colspan="7" class="text-center text-danger">
@@ -148,14 +229,17 @@ async function crearDatosEjemplo() {
     ];
 
     try {
-        for (const producto of productosEjemplo) {
-            await fetch(API_URL, {
-                method: 'POST',
-                headers: {
-                    'Content-Type': 'application/json'
-                },
-                body: JSON.stringify(producto)
-            });
+        // Una sola petición en lote en lugar de un POST por producto
+        const response = await fetch(`${API_URL}/batch`, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json'
+            },
+            body: JSON.stringify(productosEjemplo)
+        });
+
+        if (!response.ok) {
+            throw new Error(`Error ${response.status}: ${response.statusText}`);
         }
         mostrarMensaje('Datos de ejemplo creados exitosamente', 'success');
     } catch (error) {
@@ -169,41 +253,80 @@ function mostrarProductosEnTabla(productos) {
     tablaProductosBody.innerHTML = '';
 
     productos.forEach(producto => {
-        const row = document.createElement('tr');
-
-        // Formatear fecha
-        const fecha = producto.fechaCreacion ? new Date(producto.fechaCreacion).toLocaleString('es-ES') : 'N/A';
-
-        row.innerHTML = `
-            <td>${producto.id}</td>
-            <td>${producto.nombre}</td>
-            <td>${producto.descripcion || '-'}</td>
-            <td>$${producto.precio.toFixed(2)}</td>
-            <td>${producto.cantidad}</td>
-            <td>${fecha}</td>
-            <td>
-                <div class="btn-group btn-group-sm">
-                    <button type="button" class="btn btn-editar" data-id="${producto.id}">
-                        Editar
-                    </button>
-                    <button type="button" class="btn btn-eliminar" data-id="${producto.id}">
-                        Eliminar
-                    </button>
-                </div>
-            </td>
-        `;
-
-        tablaProductosBody.appendChild(row);
+        tablaProductosBody.appendChild(crearFilaProducto(producto));
     });
+}
+
+function crearFilaProducto(producto) {
+    const row = document.createElement('tr');
+    row.dataset.id = producto.id;
+
+    // Formatear fecha
+    const fecha = producto.fechaCreacion ? new Date(producto.fechaCreacion).toLocaleString('es-ES') : 'N/A';
+
+    row.innerHTML = `
+        <td>${producto.id}</td>
+        <td>${producto.nombre}</td>
+        <td>${producto.descripcion || '-'}</td>
+        <td>$${producto.precio.toFixed(2)}</td>
+        <td>${producto.cantidad}</td>
+        <td>${fecha}</td>
+        <td>
+            <div class="btn-group btn-group-sm">
+                <button type="button" class="btn btn-editar" data-id="${producto.id}">
+                    Editar
+                </button>
+                <button type="button" class="btn btn-eliminar" data-id="${producto.id}">
+                    Eliminar
+                </button>
+            </div>
+        </td>
+    `;
 
     // Agregar eventos a los botones
-    document.querySelectorAll('.btn-editar').forEach(btn => {
-        btn.addEventListener('click', () => cargarProductoParaEditar(parseInt(btn.dataset.id)));
-    });
+    row.querySelector('.btn-editar').addEventListener('click', () => cargarProductoParaEditar(producto.id));
+    row.querySelector('.btn-eliminar').addEventListener('click', () => mostrarConfirmacionEliminar(producto.id));
+    return row;
+}
 
-    document.querySelectorAll('.btn-eliminar').forEach(btn => {
-        btn.addEventListener('click', () => mostrarConfirmacionEliminar(parseInt(btn.dataset.id)));
-    });
+function filaDe(id) {
+    return tablaProductosBody.querySelector(`tr[data-id="${id}"]`);
+}
+
+function insertarOReemplazarFila(producto) {
+    const nueva = crearFilaProducto(producto);
+    const existente = filaDe(producto.id);
+    if (existente) {
+        existente.replaceWith(nueva);
+        return;
+    }
+    // Quitar el spinner o el mensaje de tabla vacía
+    tablaProductosBody.querySelectorAll('tr:not([data-id])').forEach(fila => fila.remove());
+    tablaProductosBody.appendChild(nueva);
+}
+
+// Las actualizaciones solo traen el ID; se pide el producto (cacheado en el servidor)
+async function refrescarFila(id) {
+    try {
+        const response = await fetch(`${API_URL}/${id}`);
+        if (response.status === HTTP_STATUS.NOT_FOUND) {
+            quitarFila(id);
+            return;
+        }
+        if (!response.ok) {
+            throw new Error(`Error ${response.status}: ${response.statusText}`);
+        }
+        insertarOReemplazarFila(await response.json());
+    } catch (error) {
+        console.error(`Error al refrescar el producto ${id}:`, error);
+    }
+}
+
+function quitarFila(id) {
+    const fila = filaDe(id);
+    if (fila) {
+        fila.remove();
+    }
 }
 
 // Funciones restantes se mantienen igual...
@@ -229,7 +352,7 @@ async function crearProducto(producto) {
         mostrarMensaje('Producto creado exitosamente', 'success');
         resetearFormulario();
         modal.hide();
-        reiniciarIntentos(); // Reinicia los intentos y vuelve a cargar
+        recargarSiHaceFalta(); // El evento del servidor ya actualiza la tabla
 
     } catch (error) {
         console.error('Error al crear producto:', error);
@@ -286,7 +409,7 @@ async function actualizarProducto(id, producto) {
         mostrarMensaje('Producto actualizado exitosamente', 'success');
         resetearFormulario();
         modal.hide();
-        reiniciarIntentos(); // Reinicia los intentos y vuelve a cargar
+        recargarSiHaceFalta(); // El evento del servidor ya actualiza la tabla
 
     } catch (error) {
         console.error('Error al actualizar producto:', error);